@@ -14,6 +14,7 @@ version = "0.0.3-SNAPSHOT"
 val springVersion = "4.1.0"
 val testNGVersion = "7.12.0"
 val jacksonVersion = "3.2.0"
+val jacksonAnnotationsVersion = "2.22"
 val openAPIUIVersion = "1.8.0"
 val openApiGeneratorVersion ="7.14.0"
 val lombokVersion = "1.18.46"
@@ -147,6 +148,11 @@ dependencies {
     // https://mvnrepository.com/artifact/tools.jackson.core/jackson-databind
     implementation("tools.jackson.core:jackson-databind:$jacksonVersion")
 
+    // Apache License 2.0
+    // Jackson 3 keeps using the 2.x annotations; pinned, since the Spring BOM would downgrade them
+    // https://mvnrepository.com/artifact/com.fasterxml.jackson.core/jackson-annotations
+    implementation("com.fasterxml.jackson.core:jackson-annotations:$jacksonAnnotationsVersion")
+
     // MIT License
     // https://mvnrepository.com/artifact/org.projectlombok/lombok
     compileOnly("org.projectlombok:lombok:$lombokVersion")
@@ -1,17 +1,31 @@
 package de.metallistdev.contractcollection.application;
 
 import tools.jackson.databind.JsonNode;
+import de.metallistdev.contractcollection.application.utilities.BatchOperation;
+import de.metallistdev.contractcollection.application.utilities.ContractChanges;
+import de.metallistdev.contractcollection.application.utilities.EventBroadcaster;
 import de.metallistdev.contractcollection.application.utilities.HttpResponse;
 import de.metallistdev.contractcollection.application.utilities.SessionUtil;
 import de.metallistdev.contractcollection.commons.Contract;
 import de.metallistdev.contractcollection.application.utilities.ReasonCodes;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.Period;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.springframework.http.HttpStatus.*;
 
@@ -20,11 +34,22 @@ import static org.springframework.http.HttpStatus.*;
 @RequestMapping(path = "/")
 public class MainController {
 
+    private static final Pattern WINDOW = Pattern.compile("(\\d{1,4})([dwm])");
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final SessionUtil session;
 
+    private final EventBroadcaster events;
+
+    /** whether /export and /shutdown wait until the file has been written or return as soon as it is queued */
+    @Value("${contractcollection.save.wait:true}")
+    private boolean waitForSave = true;
+
     @Autowired
-    public MainController(SessionUtil session) {
+    public MainController(SessionUtil session, EventBroadcaster events) {
         this.session = session;
+        this.events = events;
     }
 
     @GetMapping(path = "/status")
@@ -44,30 +69,7 @@ public class MainController {
         log.debug(contractJson.toPrettyString());
 
         try {
-            String category = contractJson.get("category").stringValue();
-            String name = contractJson.get("name").stringValue();
-            float expenses = contractJson.get("expenses").floatValue();
-            int cycle = contractJson.get("cycle").intValue();
-            String customerNr = contractJson.get("customerNr").stringValue();
-            String contractNr = contractJson.get("contractNr").stringValue();
-            String startDate = contractJson.get("startDate").stringValue();
-            int contractPeriod = contractJson.get("contractPeriod").intValue();
-            int periodOfNotice = contractJson.get("periodOfNotice").intValue();
-            String description = contractJson.get("description").asString();
-            String documentPath = contractJson.get("documentPath").asString();
-
-            if (cycle < 1) throw new IllegalArgumentException("The given cycle is below 1 month. Please check the input.");
-
-            int maxID = 1;
-            for (Contract v : session.getContracts()) {
-                if (v.getId() == maxID) maxID = v.getId() + 1;
-            }
-
-            Contract contract = new Contract(
-                    maxID, category, name, expenses, cycle, customerNr, contractNr, startDate, contractPeriod,
-                    periodOfNotice, description, documentPath
-            );
-
+            Contract contract = parseNewContract(contractJson);
             if (!session.addContract(contract)) throw new IllegalStateException("Failed to add contract.");
 
             return ResponseEntity.ok(HttpResponse.requestSingleContract(ReasonCodes.RC_CREATE_SUCCESS, contract));
@@ -80,6 +82,78 @@ public class MainController {
         }
     }
 
+    /**
+     * reads a contract to be added
+     * @param contractJson holds all data of the new contract
+     * @return             the contract without id
+     */
+    private static Contract parseNewContract(JsonNode contractJson) {
+        String category = contractJson.get("category").stringValue();
+        String name = contractJson.get("name").stringValue();
+        float expenses = contractJson.get("expenses").floatValue();
+        int cycle = contractJson.get("cycle").intValue();
+        String customerNr = contractJson.get("customerNr").stringValue();
+        String contractNr = contractJson.get("contractNr").stringValue();
+        String startDate = contractJson.get("startDate").stringValue();
+        int contractPeriod = contractJson.get("contractPeriod").intValue();
+        int periodOfNotice = contractJson.get("periodOfNotice").intValue();
+        String description = contractJson.get("description").asString();
+        String documentPath = contractJson.get("documentPath").asString();
+
+        if (cycle < 1) throw new IllegalArgumentException("The given cycle is below 1 month. Please check the input.");
+
+        // the id gets assigned by the session
+        return new Contract(
+                0, category, name, expenses, cycle, customerNr, contractNr, startDate, contractPeriod,
+                periodOfNotice, description, documentPath
+        );
+    }
+
+    /**
+     * applies many add, update and delete operations at once; if one of them fails, none is applied
+     * @param request array of operations, e.g. {"op": "add", "contract": {...}},
+     *                {"op": "update", "id": 3, "key": "name", "value": "..."} or {"op": "delete", "id": 5}
+     * @return        whether the batch got applied and the result of every operation up to the first failure
+     */
+    @PostMapping(path = "/batch")
+    public ResponseEntity<JsonNode> applyBatch(@RequestBody JsonNode request) {
+        if (!request.isArray()) {
+            log.error("A batch has to be an array of operations.");
+            return ResponseEntity.badRequest().body(HttpResponse.requestBatch(ReasonCodes.RC_GENERAL_ERROR, false, List.of()));
+        }
+        log.info("Apply a batch of {} operations.", request.size());
+        log.debug(request.toPrettyString());
+
+        List<BatchOperation> operations = new ArrayList<>(request.size());
+        for (JsonNode operation : request) operations.add(parseOperation(operation));
+
+        List<BatchOperation.Result> results = session.applyBatch(operations);
+        boolean applied = results.size() == operations.size() && results.stream().allMatch(BatchOperation.Result::isSuccess);
+        if (applied) return ResponseEntity.ok(HttpResponse.requestBatch(ReasonCodes.RC_GENERAL_SUCCESS, true, results));
+        else return ResponseEntity.status(CONFLICT).body(HttpResponse.requestBatch(ReasonCodes.RC_GENERAL_ERROR, false, results));
+    }
+
+    /**
+     * reads a single operation of a batch
+     * @param operation json of the operation
+     * @return          the operation or an invalid one, which fails the batch
+     */
+    private static BatchOperation parseOperation(JsonNode operation) {
+        try {
+            return switch (operation.path("op").asString()) {
+                case "add"    -> BatchOperation.add(parseNewContract(operation.get("contract")));
+                case "update" -> BatchOperation.update(operation.get("id").intValue(),
+                        operation.get("key").stringValue(), operation.get("value").asString());
+                case "delete" -> BatchOperation.delete(operation.get("id").intValue());
+                default       -> throw new IllegalArgumentException("Unknown operation " + operation.path("op"));
+            };
+        } catch (Exception e) {
+            log.error("Invalid operation in batch: {}", e.getMessage());
+            log.debug(operation.toString());
+            return BatchOperation.invalid();
+        }
+    }
+
     /**
      * deletes a specified contract
      * @param request holds all data of the request
@@ -92,23 +166,17 @@ public class MainController {
 
         int id = request.get("id").intValue();
         String name = request.get("name").stringValue();
-        Contract contract = session.getSingleContract(id);
 
         try {
             log.info("Try to delete the contract with ID {}.", id);
-            if (session.removeContract(id)) {
-                log.info("Successfully deleted by ID.");
-                return ResponseEntity.status(OK).body(HttpResponse.requestDeleteContract(ReasonCodes.RC_DELETE_SUCCESS));
-            } else if (session.removeContract(contract)) {
-                log.info("Successfully deleted by object.");
-                return ResponseEntity.status(OK).body(HttpResponse.requestDeleteContract(ReasonCodes.RC_DELETE_SUCCESS));
-            } else
-                throw new IllegalStateException("Something went wrong during deletion of the contract with ID " + id + ".");
-
-        } catch (NullPointerException npe) {
-            String message = ReasonCodes.RC_DELETE_MISSING + ": the contract with ID " + id + " and name " +  name + " is unavailable.";
-            log.error(message);
-            return ResponseEntity.status(NOT_FOUND).body(HttpResponse.requestDeleteContract(ReasonCodes.RC_DELETE_MISSING));
+            // the repository removes by id and reports a missing contract, so there is nothing to look up again
+            if (!session.removeContract(id)) {
+                String message = ReasonCodes.RC_DELETE_MISSING + ": the contract with ID " + id + " and name " +  name + " is unavailable.";
+                log.error(message);
+                return ResponseEntity.status(NOT_FOUND).body(HttpResponse.requestDeleteContract(ReasonCodes.RC_DELETE_MISSING));
+            }
+            log.info("Successfully deleted by ID.");
+            return ResponseEntity.status(OK).body(HttpResponse.requestDeleteContract(ReasonCodes.RC_DELETE_SUCCESS));
         } catch (Exception e) {
             log.error(e.getMessage());
             log.error(Arrays.toString(e.getStackTrace()));
@@ -117,32 +185,179 @@ public class MainController {
     }
 
     /**
-     * fetches a list of all contracts
-     * @return list of all contracts
+     * fetches all contracts or a page of them, ordered by id; the response is streamed one contract at a time
+     * @param limit       maximum number of contracts (optional, all by default)
+     * @param after       cursor: id of the last contract of the previous page (optional)
+     * @param ifNoneMatch entity tag of the list, which the client already has (optional)
+     * @return            list of contracts or 304, if nothing changed
      */
     @GetMapping(path = "/all")
-    public ResponseEntity<JsonNode> getAllContracts() {
+    public ResponseEntity<StreamingResponseBody> getAllContracts(@RequestParam(required = false) Integer limit,
+                                                                 @RequestParam(defaultValue = "0") int after,
+                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.info("GET-Request for all contracts.");
-        return ResponseEntity.status(OK).body(HttpResponse.requestGetAllContracts(ReasonCodes.RC_GENERAL_SUCCESS, session.getContracts()));
+        log.debug("limit = {}, after = {}", limit, after);
+
+        if (limit != null && limit < 1) {
+            log.error("Invalid page size {}.", limit);
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(output ->
+                    HttpResponse.writeAllContracts(output, ReasonCodes.RC_GENERAL_ERROR, List.of()));
+        }
+
+        // the version is read before the contracts, so the tag never claims a newer state than the body
+        String eTag = HttpResponse.eTag(session.getVersion());
+        if (HttpResponse.notModified(ifNoneMatch, eTag)) {
+            log.debug("Contracts unchanged since {}", eTag);
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        List<Contract> contracts = limit == null && after <= 0
+                ? session.getContracts()
+                : session.getContracts(after, limit == null ? Integer.MAX_VALUE : limit);
+        return ResponseEntity.status(OK).eTag(eTag).contentType(MediaType.APPLICATION_JSON).body(output ->
+                HttpResponse.writeAllContracts(output, ReasonCodes.RC_GENERAL_SUCCESS, contracts));
+    }
+
+    /**
+     * fetches the changes since a version, so that a client doesn't have to fetch all contracts again
+     * @param since version of the contracts, which the client knows (the "version" of its last response)
+     * @return      changed contracts and ids of removed ones; all contracts, if the changes are not known anymore
+     */
+    @GetMapping(path = "/changes")
+    public ResponseEntity<StreamingResponseBody> getChanges(@RequestParam long since) {
+        log.info("GET-Request for changes since version {}.", since);
+
+        ContractChanges changes = session.getChanges(since);
+        if (changes.snapshot()) log.debug("Changes since {} unknown, sending all contracts.", since);
+        else log.debug("{} changed and {} removed contracts since {}.", changes.contracts().size(),
+                changes.removed().size(), since);
+        return ResponseEntity.status(OK).contentType(MediaType.APPLICATION_JSON).body(output ->
+                HttpResponse.writeChanges(output, ReasonCodes.RC_GENERAL_SUCCESS, changes));
+    }
+
+    /**
+     * subscribes to the changes of the contracts: every change is pushed as server-sent event with the version as id
+     * and a compact json as data; a client, which can't keep up, gets disconnected and has to catch up via /changes
+     * @return stream of events
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeEvents() {
+        log.info("GET-Request for events.");
+        return events.subscribe();
+    }
+
+    /**
+     * fetches all contracts of a category
+     * @param category exact name of the category
+     * @return         matching contracts
+     */
+    @GetMapping(path = "/by-category/{category}")
+    public ResponseEntity<JsonNode> getContractsByCategory(@PathVariable String category) {
+        log.info("GET-Request for contracts of category {}", category);
+        return ResponseEntity.ok(HttpResponse.requestGetAllContracts(ReasonCodes.RC_GENERAL_SUCCESS,
+                session.getContractsByCategory(category)));
+    }
+
+    /**
+     * fetches all contracts with a contract number
+     * @param contractNr exact contract number
+     * @return           matching contracts
+     */
+    @GetMapping(path = "/by-contract-nr/{contractNr}")
+    public ResponseEntity<JsonNode> getContractsByContractNr(@PathVariable String contractNr) {
+        log.info("GET-Request for contracts with contract number {}", contractNr);
+        return ResponseEntity.ok(HttpResponse.requestGetAllContracts(ReasonCodes.RC_GENERAL_SUCCESS,
+                session.getContractsByContractNr(contractNr)));
+    }
+
+    /**
+     * fetches all contracts with a customer number
+     * @param customerNr exact customer number
+     * @return           matching contracts
+     */
+    @GetMapping(path = "/by-customer-nr/{customerNr}")
+    public ResponseEntity<JsonNode> getContractsByCustomerNr(@PathVariable String customerNr) {
+        log.info("GET-Request for contracts with customer number {}", customerNr);
+        return ResponseEntity.ok(HttpResponse.requestGetAllContracts(ReasonCodes.RC_GENERAL_SUCCESS,
+                session.getContractsByCustomerNr(customerNr)));
+    }
+
+    /**
+     * fetches the expense totals overall and per category
+     * @return number of contracts, yearly and monthly costs
+     */
+    @GetMapping(path = "/stats")
+    public ResponseEntity<JsonNode> getStatistics() {
+        log.info("GET-Request for statistics.");
+        return ResponseEntity.ok(HttpResponse.requestStatistics(ReasonCodes.RC_GENERAL_SUCCESS, session.getStatistics()));
     }
 
     /**
-     * fetches a specified contract
-     * @param id   id of the requested contract
-     * @return     contract or null
+     * aggregates the numeric attributes of all contracts
+     * @return count, costs, averages and extremes
+     */
+    @GetMapping(path = "/analytics")
+    public ResponseEntity<JsonNode> getAnalytics() {
+        log.info("GET-Request for analytics.");
+        return ResponseEntity.ok(HttpResponse.requestAnalytics(ReasonCodes.RC_GENERAL_SUCCESS,
+                session.getColumns().summarize()));
+    }
+
+    /**
+     * fetches the upcoming cancellation deadlines
+     * @param within time window as number of days, weeks or months, e.g. "30d", "6w" or "3m"
+     * @return       deadlines ordered by date
+     */
+    @GetMapping(path = "/deadlines")
+    public ResponseEntity<JsonNode> getDeadlines(@RequestParam(defaultValue = "30d") String within) {
+        log.info("GET-Request for deadlines within {}", within);
+
+        Matcher matcher = WINDOW.matcher(within);
+        if (!matcher.matches()) {
+            log.error("Invalid time window {}.", within);
+            return ResponseEntity.badRequest().body(HttpResponse.requestDeadlines(ReasonCodes.RC_GENERAL_ERROR, List.of()));
+        }
+        int amount = Integer.parseInt(matcher.group(1));
+        Period window = switch (matcher.group(2)) {
+            case "w" -> Period.ofWeeks(amount);
+            case "m" -> Period.ofMonths(amount);
+            default  -> Period.ofDays(amount);
+        };
+        return ResponseEntity.ok(HttpResponse.requestDeadlines(ReasonCodes.RC_GENERAL_SUCCESS,
+                session.getDeadlines().upcoming(window)));
+    }
+
+    /**
+     * fetches a specified contract; the response is written straight from the contract without building a tree
+     * @param id          id of the requested contract
+     * @param ifNoneMatch entity tag of the contract, which the client already has (optional)
+     * @return            contract, 304 if it didn't change, or null
      */
     @GetMapping(path = "/get/{id}")
-    public ResponseEntity<JsonNode> getSingleContract(@PathVariable int id) {
+    public ResponseEntity<StreamingResponseBody> getSingleContract(@PathVariable int id,
+                                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.info("GET-Request for single contract with id {}", id);
+        long version = session.getVersion(id);
+        String eTag = HttpResponse.eTag(version);
+        if (version > 0 && HttpResponse.notModified(ifNoneMatch, eTag)) {
+            log.debug("Contract {} unchanged since {}", id, eTag);
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+
         Contract contract = session.getSingleContract(id);
-        if (contract != null) return ResponseEntity.ok(HttpResponse.requestSingleContract(ReasonCodes.RC_GENERAL_SUCCESS, contract));
-        else return ResponseEntity.status(NOT_FOUND).body(HttpResponse.requestSingleContract(ReasonCodes.RC_GENERAL_ERROR, new Contract()));
+        if (contract != null) return ResponseEntity.ok().eTag(eTag).contentType(MediaType.APPLICATION_JSON).body(output ->
+                HttpResponse.writeSingleContract(output, ReasonCodes.RC_GENERAL_SUCCESS, contract));
+        else return ResponseEntity.status(NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(output ->
+                HttpResponse.writeSingleContract(output, ReasonCodes.RC_GENERAL_ERROR, new Contract()));
     }
 
     /**
-     * changes some information on a contract (only one key per request!)
+     * changes information on a contract
+     * <p>
+     * the request is either a JSON merge patch (RFC 7396) with any number of attributes, which are changed at once,
+     * or a single pair of "key" and "value"
      * @param id      id of the contract
-     * @param request key and value which will be updated
+     * @param request merge patch or key and value which will be updated
      * @return        updated contract or empty contract
      */
     @PatchMapping(path = "/change/{id}")
@@ -150,10 +365,18 @@ public class MainController {
         log.info("PATCH-Request for single contract with id {}", id);
         log.debug(request.toPrettyString());
 
+        if (!request.has("key")) return patchContract(id, request);
+
         String key = request.get("key").stringValue();
         String value = request.get("value").asString();
 
-        Contract newContract = session.updateContract(id, key, value);
+        Contract newContract;
+        try {
+            newContract = session.updateContract(id, key, value);
+        } catch (IllegalArgumentException e) {
+            log.error("The value for key {} of contract {} is invalid: {}", key, id, e.getMessage());
+            return ResponseEntity.badRequest().body(HttpResponse.requestSingleContract(ReasonCodes.RC_UPDATE_ERROR, new Contract()));
+        }
         if (newContract == null) {
             log.error("An error occurred during the update of key {}", key);
             log.debug("key = {}, value = {}", key, value);
@@ -163,6 +386,22 @@ public class MainController {
         return ResponseEntity.ok(HttpResponse.requestSingleContract(ReasonCodes.RC_UPDATE_SUCCESS, newContract));
     }
 
+    private ResponseEntity<JsonNode> patchContract(int id, JsonNode patch) {
+        Contract newContract;
+        try {
+            newContract = session.patchContract(id, patch);
+        } catch (IllegalArgumentException e) {
+            log.error("The patch for contract {} is invalid: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().body(HttpResponse.requestSingleContract(ReasonCodes.RC_UPDATE_ERROR, new Contract()));
+        }
+        if (newContract == null) {
+            log.error("The contract {} to patch doesn't exist", id);
+            return ResponseEntity.status(CONFLICT).body(HttpResponse.requestSingleContract(ReasonCodes.RC_UPDATE_ERROR, new Contract()));
+        }
+        log.info("The Contract number {} was updated for keys {}", id, patch.propertyNames());
+        return ResponseEntity.ok(HttpResponse.requestSingleContract(ReasonCodes.RC_UPDATE_SUCCESS, newContract));
+    }
+
     /**
      * imports data from a json-file
      * @param request contains the path of the file and whether to append or overwrite existing data
@@ -174,7 +413,7 @@ public class MainController {
         log.debug(request.toPrettyString());
 
         boolean overwrite = request.get("overwrite").booleanValue();
-        if (overwrite) session.removeAllContracts();
+        if (overwrite) session.clearForImport();
         String filepath = request.get("filepath").asString();
         String password = request.get("password").asString();
 
@@ -185,6 +424,38 @@ public class MainController {
         else return ResponseEntity.ok(HttpResponse.requestGetAllContracts(ReasonCodes.RC_IMPORT_SUCCESS, result));
     }
 
+    /**
+     * imports contracts from newline-delimited JSON (one contract per line), which is parsed while it is received
+     * @param overwrite whether existing contracts are removed first
+     * @param input     request body
+     * @return          status json with the number of imported contracts
+     */
+    @PostMapping(path = "/import/ndjson")
+    public ResponseEntity<JsonNode> importNdjson(@RequestParam(defaultValue = "false") boolean overwrite,
+                                                 InputStream input) {
+        log.info("Import contracts from NDJSON.");
+
+        try {
+            if (overwrite) session.removeAllContracts();
+            long imported = session.importNdjson(input);
+            return ResponseEntity.ok(HttpResponse.requestTransfer(ReasonCodes.RC_IMPORT_SUCCESS, imported));
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+            return ResponseEntity.badRequest().body(HttpResponse.requestTransfer(ReasonCodes.RC_IMPORT_FAILED, 0));
+        }
+    }
+
+    /**
+     * exports all contracts as newline-delimited JSON (one contract per line), which is streamed to the client
+     * @return contracts
+     */
+    @GetMapping(path = "/export/ndjson")
+    public ResponseEntity<StreamingResponseBody> exportNdjson() {
+        log.info("Export contracts as NDJSON.");
+        return ResponseEntity.ok().contentType(NDJSON).body(session::exportNdjson);
+    }
+
     /**
      * exports given contracts to json-file
      * @param request contains path and contracts
@@ -199,7 +470,10 @@ public class MainController {
         String password = request.get("password").stringValue();
         log.debug("contracts = {}", request.get("contracts").toPrettyString());
 
-        if (session.writeFile(filepath, password)) return ResponseEntity.ok(HttpResponse.requestDeleteContract(ReasonCodes.RC_EXPORT_SUCCESS));
+        CompletableFuture<Boolean> save = session.saveFile(filepath, password);
+        if (!waitForSave) return ResponseEntity.accepted().body(HttpResponse.requestDeleteContract(ReasonCodes.RC_EXPORT_ACCEPTED));
+
+        if (succeeded(save)) return ResponseEntity.ok(HttpResponse.requestDeleteContract(ReasonCodes.RC_EXPORT_SUCCESS));
         else return ResponseEntity.badRequest().body(HttpResponse.requestDeleteContract(ReasonCodes.RC_EXPORT_FAILED));
     }
 
@@ -210,8 +484,12 @@ public class MainController {
     @GetMapping("/shutdown")
     public ResponseEntity<JsonNode> prepareShutdown() {
         log.info("Shutdown requested");
-        boolean success = session.prepareShutdown();
-        if (success) {
+        CompletableFuture<Boolean> save = session.prepareShutdown();
+        if (!waitForSave) {
+            // the session finishes queued saves before the application stops
+            return ResponseEntity.accepted().body(HttpResponse.requestShutdown(ReasonCodes.RC_SHUTDOWN_ACCEPTED));
+        }
+        if (succeeded(save)) {
             log.info("data export successful");
             return ResponseEntity.ok(HttpResponse.requestShutdown(ReasonCodes.RC_SHUTDOWN_SUCCESS));
         }
@@ -220,4 +498,18 @@ public class MainController {
             return ResponseEntity.internalServerError().body(HttpResponse.requestShutdown(ReasonCodes.RC_SHUTDOWN_FAILED));
         }
     }
+
+    /**
+     * waits for a save on the writer thread
+     * @param save pending save
+     * @return     true, if the file has been written
+     */
+    private static boolean succeeded(CompletableFuture<Boolean> save) {
+        try {
+            return save.join();
+        } catch (Exception e) {
+            log.debug(e.getMessage());
+            return false;
+        }
+    }
 }
@@ -0,0 +1,153 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * saves the session in the background after it got changed
+ * <p>
+ * the saver compares the version of the repository with the last saved version, so a burst of changes results in
+ * a single save: it waits until no change happened for the debounce window, but at most the max latency after the
+ * first unsaved change. Changes only mark the session as dirty; the save itself runs on the given scheduler. What a
+ * save does is up to the session: with a change journal, the changes are on disk already and nothing is written.
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+@Slf4j
+public class AutoSaver implements ContractListener {
+
+    private final ScheduledExecutorService scheduler;
+    private final long debounce;
+    private final long maxLatency;
+    private final LongSupplier version;
+    private final BooleanSupplier save;
+
+    private volatile long savedVersion;
+
+    /** time of the first and the last unsaved change in nanoseconds; guarded by this */
+    private long firstChange;
+    private long lastChange;
+    private ScheduledFuture<?> pending;
+
+    /**
+     * @param scheduler  thread to save on
+     * @param debounce   time without changes, after which the session gets saved
+     * @param maxLatency maximum time between a change and the save
+     * @param version    current version of the repository
+     * @param save       saves the session; false if there is nothing to save to
+     */
+    public AutoSaver(ScheduledExecutorService scheduler, Duration debounce, Duration maxLatency,
+                     LongSupplier version, BooleanSupplier save) {
+        this.scheduler = scheduler;
+        this.debounce = debounce.toNanos();
+        this.maxLatency = Math.max(maxLatency.toNanos(), this.debounce);
+        this.version = version;
+        this.save = save;
+        this.savedVersion = version.getAsLong();
+    }
+
+    /**
+     * @return true, if there are changes, which haven't been saved yet
+     */
+    public boolean isDirty() {
+        return version.getAsLong() > savedVersion;
+    }
+
+    /**
+     * records a successful save
+     * @param savedVersion version of the repository, which is contained in the save
+     */
+    public synchronized void markSaved(long savedVersion) {
+        this.savedVersion = Math.max(this.savedVersion, savedVersion);
+    }
+
+    @Override
+    public void contractAdded(Contract contract) {
+        changed();
+    }
+
+    @Override
+    public void contractUpdated(Contract previous, Contract current) {
+        changed();
+    }
+
+    @Override
+    public void contractRemoved(Contract contract) {
+        changed();
+    }
+
+    @Override
+    public void contractsCleared() {
+        changed();
+    }
+
+    private synchronized void changed() {
+        long now = System.nanoTime();
+        if (pending == null) {
+            firstChange = now;
+            pending = schedule(debounce);
+        }
+        lastChange = now;
+    }
+
+    /**
+     * saves, once the burst of changes is over; otherwise waits until it is due
+     */
+    private void run() {
+        synchronized (this) {
+            long due = Math.min(lastChange + debounce, firstChange + maxLatency);
+            long remaining = due - System.nanoTime();
+            if (remaining > 0) {
+                pending = schedule(remaining);
+                return;
+            }
+            pending = null;
+        }
+        if (!isDirty()) return;
+
+        try {
+            if (save.getAsBoolean()) log.debug("Autosaved version {}.", savedVersion);
+            else log.debug("Nothing to autosave to.");
+        } catch (Exception e) {
+            log.error("Autosave failed, retrying later.");
+            log.debug(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+            synchronized (this) {
+                if (pending == null) {
+                    firstChange = lastChange = System.nanoTime();
+                    pending = schedule(maxLatency);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the scheduled save or null, if the scheduler has been shut down
+     */
+    private ScheduledFuture<?> schedule(long delay) {
+        try {
+            return scheduler.schedule(this::run, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Scheduler shut down, autosave skipped.");
+            return null;
+        }
+    }
+
+    /**
+     * stops waiting for pending saves
+     */
+    public synchronized void cancel() {
+        if (pending != null) pending.cancel(false);
+        pending = null;
+    }
+}
@@ -0,0 +1,53 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+
+/**
+ * single operation of a batch, which is applied together with the other operations or not at all
+ * (see SessionUtil.applyBatch)
+ *
+ * @param type     kind of operation
+ * @param id       ID of the contract to update or delete
+ * @param contract contract to add
+ * @param key      attribute to update
+ * @param value    new value of the attribute
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+public record BatchOperation(Type type, int id, Contract contract, String key, String value) {
+
+    public enum Type { ADD, UPDATE, DELETE, INVALID }
+
+    /**
+     * outcome of an operation
+     * @param operation  the operation
+     * @param reasonCode result; a success code also for valid operations of a batch, which got rejected
+     * @param contract   added or updated contract or null
+     */
+    public record Result(BatchOperation operation, ReasonCodes reasonCode, Contract contract) {
+        public boolean isSuccess() {
+            return reasonCode == ReasonCodes.RC_CREATE_SUCCESS || reasonCode == ReasonCodes.RC_UPDATE_SUCCESS
+                    || reasonCode == ReasonCodes.RC_DELETE_SUCCESS;
+        }
+    }
+
+    public static BatchOperation add(Contract contract) {
+        return new BatchOperation(Type.ADD, 0, contract, null, null);
+    }
+
+    public static BatchOperation update(int id, String key, String value) {
+        return new BatchOperation(Type.UPDATE, id, null, key, value);
+    }
+
+    public static BatchOperation delete(int id) {
+        return new BatchOperation(Type.DELETE, id, null, null, null);
+    }
+
+    /**
+     * placeholder for an operation, which couldn't be read; it fails the batch
+     */
+    public static BatchOperation invalid() {
+        return new BatchOperation(Type.INVALID, 0, null, null, null);
+    }
+}
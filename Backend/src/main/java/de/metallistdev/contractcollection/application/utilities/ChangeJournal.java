@@ -0,0 +1,267 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * append-only, encrypted log of the changes made since the last snapshot of a vault
+ * <p>
+ * layout (big endian):
+ * <pre>
+ * magic "CCJL"         4 bytes
+ * format version       2 bytes
+ * IV length            1 byte,  followed by the IV of the vault snapshot the journal belongs to
+ * frames               until the end of the file, each:
+ *   ciphertext length  4 bytes
+ *   nonce              12 bytes
+ *   ciphertext         AES-GCM of one change including the tag
+ * </pre>
+ * Every frame is authenticated on its own together with the snapshot IV and its position, so frames can neither
+ * be moved into another journal nor reordered. A frame, which was only partially written (e.g. on a crash), ends
+ * the journal and gets overwritten by the next append.
+ * <p>
+ * Every append is forced to the storage device before it returns: between two snapshots the journal is the only copy
+ * of a change, so a change, whose request got a success response, has to survive a power loss. This costs a sync per
+ * change, which is cheap compared to rewriting the vault.
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+@Slf4j
+public class ChangeJournal implements Closeable {
+    /** "CCJL" in ASCII */
+    public static final int MAGIC = 0x43434A4C;
+    public static final int VERSION = 1;
+
+    private static final int NONCE_LENGTH = EncryptionUtil.getGCM_IV_LENGTH();
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * result of a replay
+     * @param frames   number of valid frames
+     * @param length   length of the valid part of the file
+     * @param complete false, if a frame failed authentication and the rest of the journal was skipped
+     */
+    public record Replay(long frames, long length, boolean complete) {}
+
+    @Getter
+    private Path path;
+
+    private final SecretKey key;
+    private final byte[] snapshotIv;
+    private FileChannel channel;
+
+    @Getter
+    private long frames;
+
+    private ChangeJournal(Path path, SecretKey key, byte[] snapshotIv, FileChannel channel, long frames) {
+        this.path = path;
+        this.key = key;
+        this.snapshotIv = snapshotIv;
+        this.channel = channel;
+        this.frames = frames;
+    }
+
+    /**
+     * @param vault path of the vault
+     * @return      path of the journal of the vault
+     */
+    public static Path pathOf(Path vault) {
+        return vault.resolveSibling(vault.getFileName() + ".journal");
+    }
+
+    /**
+     * @param vault path of the vault
+     * @return      path of the journal, which belongs to a snapshot of the vault that is being written
+     */
+    public static Path nextPathOf(Path vault) {
+        return vault.resolveSibling(vault.getFileName() + ".journal.next");
+    }
+
+    /**
+     * @param vault path of the vault
+     * @return      path, under which a journal is kept, that couldn't be replayed completely
+     */
+    public static Path unreplayedPathOf(Path vault) {
+        return vault.resolveSibling(vault.getFileName() + ".journal.unreplayed");
+    }
+
+    /**
+     * creates an empty journal; an existing file gets overwritten
+     * @param path       path of the journal
+     * @param key        key of the vault
+     * @param snapshotIv IV of the vault snapshot the journal belongs to
+     * @return           journal ready for appending
+     */
+    public static ChangeJournal create(Path path, SecretKey key, byte[] snapshotIv) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(headerLength(snapshotIv));
+            header.putInt(MAGIC);
+            header.putShort((short) VERSION);
+            header.put((byte) snapshotIv.length);
+            header.put(snapshotIv);
+            header.flip();
+            while (header.hasRemaining()) channel.write(header);
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ChangeJournal(path, key, snapshotIv, channel, 0);
+    }
+
+    /**
+     * opens a replayed journal for appending; a partially written frame at its end gets cut off
+     * @param path       path of the journal
+     * @param key        key of the vault
+     * @param snapshotIv IV of the vault snapshot the journal belongs to
+     * @param replay     result of the replay of this journal
+     * @return           journal ready for appending
+     */
+    public static ChangeJournal open(Path path, SecretKey key, byte[] snapshotIv, Replay replay) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        channel.truncate(replay.length());
+        channel.position(replay.length());
+        return new ChangeJournal(path, key, snapshotIv, channel, replay.frames());
+    }
+
+    /**
+     * encrypts and appends a change; it is on the storage device once this returns
+     * @param plaintext serialized change
+     */
+    public synchronized void append(byte[] plaintext) throws IOException, GeneralSecurityException {
+        GCMParameterSpec spec = EncryptionUtil.generateGCMSpecs();
+        byte[] ciphertext = EncryptionUtil.encrypt(plaintext, key, spec, associatedData(snapshotIv, frames));
+
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + NONCE_LENGTH + ciphertext.length);
+        frame.putInt(ciphertext.length);
+        frame.put(spec.getIV());
+        frame.put(ciphertext);
+        frame.flip();
+        while (frame.hasRemaining()) channel.write(frame);
+        // the grown file size is needed to read the frame back, so the metadata is synced as well
+        channel.force(true);
+        frames++;
+    }
+
+    /**
+     * @return size of the journal in bytes
+     */
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * moves the journal to another path, e.g. once the snapshot it belongs to has been written
+     * @param target new path; an existing file gets replaced
+     */
+    public synchronized void moveTo(Path target) throws IOException {
+        channel.force(true);
+        channel.close();
+        try {
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        path = target;
+        channel = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * decrypts all changes of a journal in their original order
+     * @param path       path of the journal
+     * @param key        key of the vault
+     * @param snapshotIv IV of the vault snapshot, which got loaded
+     * @param consumer   receives the serialized changes
+     * @return           result of the replay or null, if the file doesn't exist or belongs to another snapshot
+     */
+    public static Replay replay(Path path, SecretKey key, byte[] snapshotIv, Consumer<byte[]> consumer)
+            throws IOException, GeneralSecurityException {
+        if (!Files.exists(path)) return null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(headerLength(snapshotIv));
+            if (!readFully(channel, header) || header.getInt() != MAGIC || header.getShort() != VERSION
+                    || header.get() != snapshotIv.length) {
+                log.info("Journal {} has no valid header.", path);
+                return null;
+            }
+            byte[] iv = new byte[snapshotIv.length];
+            header.get(iv);
+            if (!Arrays.equals(iv, snapshotIv)) {
+                log.info("Journal {} belongs to another snapshot.", path);
+                return null;
+            }
+
+            long frames = 0;
+            long valid = channel.position();
+            ByteBuffer frameHeader = ByteBuffer.allocate(Integer.BYTES + NONCE_LENGTH);
+            while (readFully(channel, frameHeader.clear())) {
+                int length = frameHeader.getInt();
+                if (length < EncryptionUtil.getGCM_TAG_LENGTH() || length > MAX_FRAME_LENGTH
+                        || length > size - channel.position()) break;
+
+                byte[] nonce = new byte[NONCE_LENGTH];
+                frameHeader.get(nonce);
+                ByteBuffer ciphertext = ByteBuffer.allocate(length);
+                readFully(channel, ciphertext);
+
+                try {
+                    consumer.accept(EncryptionUtil.decrypt(ciphertext.array(), key, nonce,
+                            associatedData(snapshotIv, frames)));
+                } catch (AEADBadTagException e) {
+                    log.error("Frame {} of journal {} failed authentication, skipping the rest.", frames, path);
+                    return new Replay(frames, valid, false);
+                }
+                frames++;
+                valid = channel.position();
+            }
+            if (valid < size) log.warn("Journal {} ends with an incomplete frame, which is ignored.", path);
+            return new Replay(frames, valid, true);
+        }
+    }
+
+    /**
+     * fills the buffer completely and flips it for reading
+     * @return false, if the channel ended before
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return false;
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private static byte[] associatedData(byte[] snapshotIv, long frame) {
+        return ByteBuffer.allocate(snapshotIv.length + Long.BYTES).put(snapshotIv).putLong(frame).array();
+    }
+
+    private static int headerLength(byte[] snapshotIv) {
+        return Integer.BYTES + Short.BYTES + 1 + snapshotIv.length;
+    }
+}
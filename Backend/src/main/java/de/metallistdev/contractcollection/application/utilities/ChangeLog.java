@@ -0,0 +1,116 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * bounded log of the latest changes of a ContractRepository, so that clients can catch up on the changes since the
+ * version they know instead of fetching all contracts
+ * <p>
+ * the log is a ring buffer of (version, id, removed) entries: once it is full, the oldest entries are overwritten
+ * and changes since a version before them can't be described anymore. Clearing the store has the same effect.
+ * Writers are serialized by the repository; readers take the monitor only for copying the entries out.
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+public class ChangeLog {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * changes since a version: the final state of every touched contract is either changed or removed
+     * @param version latest version covered by the changes
+     * @param changed ids of added or updated contracts, in the order of their last change
+     * @param removed ids of removed contracts, in the order of their removal
+     */
+    public record Delta(long version, int[] changed, int[] removed) {}
+
+    private final long[] versions;
+    private final int[] ids;
+    private final boolean[] removals;
+
+    /** number of entries ever recorded; the next entry goes to position count % capacity */
+    private long count;
+
+    /** changes after this version are complete in the log */
+    private long oldest;
+
+    /** version of the latest change */
+    private long latest;
+
+    /**
+     * @param capacity maximum number of changes, which are kept
+     */
+    public ChangeLog(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity has to be at least 1");
+        this.versions = new long[capacity];
+        this.ids = new int[capacity];
+        this.removals = new boolean[capacity];
+    }
+
+    /**
+     * records a change of a contract
+     * @param version version of the store after the change
+     * @param id      ID of the changed contract
+     * @param removed whether the contract got removed
+     */
+    public synchronized void record(long version, int id, boolean removed) {
+        int position = (int) (count % versions.length);
+        if (count >= versions.length) oldest = versions[position];
+        versions[position] = version;
+        ids[position] = id;
+        removals[position] = removed;
+        count++;
+        latest = version;
+    }
+
+    /**
+     * forgets all changes, e.g. after all contracts were removed
+     * @param version version of the store after the reset
+     */
+    public synchronized void reset(long version) {
+        count = 0;
+        oldest = version;
+        latest = version;
+    }
+
+    /**
+     * collects the changes after a version
+     * @param since version known by the client
+     * @return      the changes or null, if the log doesn't reach back to this version
+     */
+    public Delta since(long since) {
+        long version;
+        int[] changeIds;
+        boolean[] changeRemovals;
+        synchronized (this) {
+            if (since < oldest || since > latest) return null;
+            version = latest;
+
+            // entries are ordered by version, so only the tail after the known version is copied
+            long first = Math.max(0, count - versions.length);
+            long start = count;
+            while (start > first && versions[(int) ((start - 1) % versions.length)] > since) start--;
+            int size = (int) (count - start);
+            changeIds = new int[size];
+            changeRemovals = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                int position = (int) ((start + i) % versions.length);
+                changeIds[i] = ids[position];
+                changeRemovals[i] = removals[position];
+            }
+        }
+
+        // the last change of a contract decides whether it changed or got removed
+        Map<Integer, Boolean> changes = new LinkedHashMap<>();
+        for (int i = 0; i < changeIds.length; i++) {
+            changes.remove(changeIds[i]);
+            changes.put(changeIds[i], changeRemovals[i]);
+        }
+        int[] changed = changes.entrySet().stream().filter(entry -> !entry.getValue())
+                .mapToInt(Map.Entry::getKey).toArray();
+        int[] removed = changes.entrySet().stream().filter(Map.Entry::getValue)
+                .mapToInt(Map.Entry::getKey).toArray();
+        return new Delta(version, changed, removed);
+    }
+}
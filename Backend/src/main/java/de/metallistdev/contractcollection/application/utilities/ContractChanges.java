@@ -0,0 +1,19 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+
+import java.util.List;
+
+/**
+ * changes of the contracts since a version, which a client knows (see SessionUtil.getChanges)
+ *
+ * @param version   version of the contracts, which the client knows after applying the changes
+ * @param snapshot  true, if the changes couldn't be described anymore and contracts holds all contracts
+ * @param contracts current state of the added or updated contracts or all contracts
+ * @param removed   ids of the removed contracts
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+public record ContractChanges(long version, boolean snapshot, List<Contract> contracts, List<Integer> removed) {
+}
@@ -0,0 +1,132 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * immutable column-wise copy of the numeric attributes of all contracts
+ * <p>
+ * each attribute is stored in its own primitive array (row i of every column belongs to the same contract), so
+ * aggregations run as tight loops over contiguous memory instead of following a pointer per contract. Large
+ * datasets are reduced in parallel.
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+public class ContractColumns {
+
+    /** number of rows from which reductions run in parallel */
+    private static final int PARALLEL_THRESHOLD = 100_000;
+
+    public static final ContractColumns EMPTY = of(-1, List.of());
+
+    /**
+     * aggregated numbers of all contracts
+     * @param count                 number of contracts
+     * @param yearly                sum of expenses * cycle
+     * @param monthly               yearly / 12
+     * @param averageExpenses       average expenses per payment
+     * @param minExpenses           lowest expenses per payment
+     * @param maxExpenses           highest expenses per payment
+     * @param averageContractPeriod average length of a contractual period in months
+     * @param averagePeriodOfNotice average period of notice in weeks
+     */
+    public record Summary(int count, double yearly, double monthly, double averageExpenses, double minExpenses,
+                          double maxExpenses, double averageContractPeriod, double averagePeriodOfNotice) {}
+
+    private final long version;
+    private final int size;
+    private final int[] ids;
+    private final float[] expenses;
+    private final int[] cycles;
+    private final int[] contractPeriods;
+    private final int[] periodsOfNotice;
+
+    private ContractColumns(long version, int size) {
+        this.version = version;
+        this.size = size;
+        this.ids = new int[size];
+        this.expenses = new float[size];
+        this.cycles = new int[size];
+        this.contractPeriods = new int[size];
+        this.periodsOfNotice = new int[size];
+    }
+
+    /**
+     * copies the numeric attributes of the contracts into columns
+     * @param version   version of the store the contracts were taken from
+     * @param contracts contracts
+     * @return          columns in the order of the contracts
+     */
+    public static ContractColumns of(long version, List<Contract> contracts) {
+        ContractColumns columns = new ContractColumns(version, contracts.size());
+        for (int row = 0; row < columns.size; row++) {
+            Contract contract = contracts.get(row);
+            columns.ids[row] = contract.getId();
+            columns.expenses[row] = contract.getExpenses();
+            columns.cycles[row] = contract.getCycle();
+            columns.contractPeriods[row] = contract.getContractPeriod();
+            columns.periodsOfNotice[row] = contract.getPeriodOfNotice();
+        }
+        return columns;
+    }
+
+    /**
+     * @return version of the store the columns were taken from
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param row row index
+     * @return    id of the contract in this row
+     */
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    /**
+     * @return sum of expenses * cycle over all contracts
+     */
+    public double yearlyTotal() {
+        return rows().mapToDouble(row -> (double) expenses[row] * cycles[row]).sum();
+    }
+
+    /**
+     * aggregates all columns
+     * @return summary of all contracts
+     */
+    public Summary summarize() {
+        if (size == 0) return new Summary(0, 0, 0, 0, 0, 0, 0, 0);
+
+        double yearly = yearlyTotal();
+        return new Summary(
+                size,
+                yearly,
+                yearly / 12,
+                rows().mapToDouble(row -> expenses[row]).sum() / size,
+                rows().mapToDouble(row -> expenses[row]).min().orElse(0),
+                rows().mapToDouble(row -> expenses[row]).max().orElse(0),
+                (double) rows().mapToLong(row -> contractPeriods[row]).sum() / size,
+                (double) rows().mapToLong(row -> periodsOfNotice[row]).sum() / size
+        );
+    }
+
+    /**
+     * @return stream of all row indexes, parallel for large datasets
+     */
+    private IntStream rows() {
+        IntStream rows = IntStream.range(0, size);
+        return size >= PARALLEL_THRESHOLD ? rows.parallel() : rows;
+    }
+}
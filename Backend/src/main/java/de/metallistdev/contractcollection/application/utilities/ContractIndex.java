@@ -0,0 +1,82 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * secondary index, which maps the value of an attribute to all contracts with this value
+ * <p>
+ * the index is maintained incrementally as listener of a ContractRepository, so a lookup costs O(matches) instead
+ * of a scan over all contracts. Lookups don't lock and return the matches ordered by id.
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+public class ContractIndex implements ContractListener {
+
+    private final Function<Contract, String> attribute;
+
+    private final Map<String, ConcurrentSkipListMap<Integer, Contract>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param attribute getter of the indexed attribute
+     */
+    public ContractIndex(Function<Contract, String> attribute) {
+        this.attribute = attribute;
+    }
+
+    /**
+     * finds all contracts with the given attribute value
+     * @param value exact value of the attribute
+     * @return      matching contracts ordered by id
+     */
+    public List<Contract> lookup(String value) {
+        ConcurrentSkipListMap<Integer, Contract> matches = entries.get(normalize(value));
+        return matches == null ? List.of() : List.copyOf(matches.values());
+    }
+
+    /**
+     * @return number of distinct attribute values
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void contractAdded(Contract contract) {
+        entries.computeIfAbsent(keyOf(contract), key -> new ConcurrentSkipListMap<>())
+                .put(contract.getId(), contract);
+    }
+
+    @Override
+    public void contractUpdated(Contract previous, Contract current) {
+        contractRemoved(previous);
+        contractAdded(current);
+    }
+
+    @Override
+    public void contractRemoved(Contract contract) {
+        entries.computeIfPresent(keyOf(contract), (key, matches) -> {
+            matches.remove(contract.getId(), contract);
+            return matches.isEmpty() ? null : matches;
+        });
+    }
+
+    @Override
+    public void contractsCleared() {
+        entries.clear();
+    }
+
+    private String keyOf(Contract contract) {
+        return normalize(attribute.apply(contract));
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value;
+    }
+}
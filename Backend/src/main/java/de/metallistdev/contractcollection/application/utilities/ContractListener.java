@@ -0,0 +1,37 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+
+/**
+ * gets notified about every change of a ContractRepository, e.g. to maintain derived data incrementally
+ * <p>
+ * callbacks run while the repository holds its write lock, i.e. one at a time and in the order of the changes.
+ * The version of the repository already includes the change, which is notified.
+ * They have to be fast and must not call back into the repository from another thread.
+ *
+ * @author Metallist-dev
+ * @version 0.2
+ */
+public interface ContractListener {
+
+    /**
+     * @param contract added contract
+     */
+    default void contractAdded(Contract contract) {}
+
+    /**
+     * @param previous replaced state of the contract
+     * @param current  new state of the contract
+     */
+    default void contractUpdated(Contract previous, Contract current) {}
+
+    /**
+     * @param contract removed contract
+     */
+    default void contractRemoved(Contract contract) {}
+
+    /**
+     * all contracts were removed
+     */
+    default void contractsCleared() {}
+}
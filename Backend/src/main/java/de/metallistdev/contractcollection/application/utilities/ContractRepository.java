@@ -0,0 +1,348 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * in-memory store of the contracts of a session
+ * <p>
+ * keeps an id-&gt;contract hash index for O(1) point operations and an id-sorted index for listing the contracts
+ * in a stable order, which also serves as cursor for paging. The store is shared by all request threads:
+ * <ul>
+ *     <li>writers are serialized by a single lock, so every mutation is atomic</li>
+ *     <li>readers never lock; they look up the hash index or get an immutable snapshot of all contracts, which is
+ *     rebuilt lazily once the store has changed</li>
+ *     <li>stored contracts are not modified in place; updates replace them with a modified copy</li>
+ * </ul>
+ * Derived data (e.g. secondary indexes) is kept in sync by registering a ContractListener.
+ * <p>
+ * every mutation increments the version of the store; each contract remembers the store version of its last change.
+ * Versions are published after the content, so a version read before the content never claims newer content.
+ * The latest changes are kept in a ChangeLog, so clients can catch up on them.
+ *
+ * @author Metallist-dev
+ * @version 0.4
+ */
+@Slf4j
+public class ContractRepository implements Iterable<Contract> {
+
+    /** immutable list of all contracts as of the given store version */
+    private record Snapshot(long version, List<Contract> contracts) {}
+
+    private final Map<Integer, Contract> index = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListMap<Integer, Contract> sorted = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /** incremented after every mutation */
+    private final AtomicLong version = new AtomicLong(0);
+
+    /** store version of the last change of each contract */
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+
+    private final ChangeLog changes;
+
+    private volatile Snapshot snapshot = new Snapshot(0, List.of());
+
+    private final IdSequence ids;
+
+    private final List<ContractListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * creates a repository, which never hands out an id twice
+     */
+    public ContractRepository() {
+        this(false);
+    }
+
+    /**
+     * @param reuseFreedIds whether ids of removed contracts are handed out again
+     */
+    public ContractRepository(boolean reuseFreedIds) {
+        this(reuseFreedIds, ChangeLog.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param reuseFreedIds     whether ids of removed contracts are handed out again
+     * @param changeLogCapacity number of the latest changes, which clients can catch up on
+     */
+    public ContractRepository(boolean reuseFreedIds, int changeLogCapacity) {
+        this.ids = new IdSequence(reuseFreedIds);
+        this.changes = new ChangeLog(changeLogCapacity);
+    }
+
+    /**
+     * registers a listener, which gets notified about all following changes; the current content is replayed as
+     * additions, so the listener starts in sync
+     * @param listener listener to be registered
+     */
+    public void addListener(ContractListener listener) {
+        writeLock.lock();
+        try {
+            for (Contract contract : sorted.values()) listener.contractAdded(contract);
+            listeners.add(listener);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * fetches a contract by its id
+     * @param id ID of the contract (primary key)
+     * @return   object of the contract or null
+     */
+    public Contract get(int id) {
+        return index.get(id);
+    }
+
+    /**
+     * checks whether a contract with the given id exists
+     * @param id ID of the contract (primary key)
+     * @return   true if present
+     */
+    public boolean contains(int id) {
+        return index.containsKey(id);
+    }
+
+    /**
+     * adds a contract; a contract without id or with an id, which is already taken, gets a new id from the sequence
+     * @param contract the contract to be added
+     * @return         true if added
+     */
+    public boolean add(Contract contract) {
+        if (contract == null) return false;
+
+        writeLock.lock();
+        try {
+            if (contract.getId() <= 0 || index.containsKey(contract.getId())) {
+                int id = ids.next();
+                log.debug("ID {} is not available, assigning {}.", contract.getId(), id);
+                contract.setId(id);
+            } else ids.observe(contract.getId());
+
+            index.put(contract.getId(), contract);
+            sorted.put(contract.getId(), contract);
+            changed(contract.getId(), false);
+            for (ContractListener listener : listeners) listener.contractAdded(contract);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * adds many contracts while holding the write lock once, so no other change interleaves (see add)
+     * @param contracts the contracts to be added, in order
+     * @return          number of added contracts
+     */
+    public int addAll(Collection<Contract> contracts) {
+        writeLock.lock();
+        try {
+            int added = 0;
+            for (Contract contract : contracts) {
+                if (add(contract)) added++;
+            }
+            return added;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * replaces the stored contract with the same id
+     * @param contract new state of the contract
+     * @return         previous state or null, if no contract with this id exists
+     */
+    public Contract replace(Contract contract) {
+        writeLock.lock();
+        try {
+            Contract previous = index.get(contract.getId());
+            if (previous == null) return null;
+
+            index.put(contract.getId(), contract);
+            sorted.put(contract.getId(), contract);
+            changed(contract.getId(), false);
+            for (ContractListener listener : listeners) listener.contractUpdated(previous, contract);
+            return previous;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * atomically updates a contract: the change is applied to a copy, which then replaces the stored contract
+     * @param id     ID of the contract (primary key)
+     * @param change modification of the copy; an exception aborts the update
+     * @return       the updated contract or null, if no contract with this id exists
+     */
+    public Contract update(int id, Consumer<Contract> change) {
+        writeLock.lock();
+        try {
+            Contract current = get(id);
+            if (current == null) return null;
+
+            Contract updated = new Contract(current);
+            change.accept(updated);
+            updated.setId(id);
+            replace(updated);
+            return updated;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * removes a contract by id
+     * @param id ID of the contract (primary key)
+     * @return   the removed contract or null
+     */
+    public Contract remove(int id) {
+        writeLock.lock();
+        try {
+            Contract removed = index.remove(id);
+            if (removed == null) return null;
+
+            sorted.remove(id);
+            ids.release(id);
+            changed(id, true);
+            for (ContractListener listener : listeners) listener.contractRemoved(removed);
+            return removed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * removes exactly the given contract object
+     * @param contract the contract to be removed
+     * @return         true if it was stored and got removed
+     */
+    public boolean remove(Contract contract) {
+        if (contract == null) return false;
+
+        writeLock.lock();
+        try {
+            return get(contract.getId()) == contract && remove(contract.getId()) != null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * removes all contracts
+     */
+    public void clear() {
+        writeLock.lock();
+        try {
+            index.clear();
+            sorted.clear();
+            versions.clear();
+            ids.reset();
+            changes.reset(version.incrementAndGet());
+            for (ContractListener listener : listeners) listener.contractsCleared();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * publishes the new version of the store and of a contract; requires the write lock
+     */
+    private void changed(int id, boolean removed) {
+        long current = version.incrementAndGet();
+        if (removed) versions.remove(id);
+        else versions.put(id, current);
+        changes.record(current, id, removed);
+    }
+
+    /**
+     * runs an action while holding the write lock, so no change happens in between its steps
+     * @param action action to be run
+     * @return       result of the action
+     */
+    public <T> T locked(Supplier<T> action) {
+        writeLock.lock();
+        try {
+            return action.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return number of stored contracts
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return number of mutations since the repository was created
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @param id ID of the contract (primary key)
+     * @return   store version of the last change of the contract or 0, if it doesn't exist
+     */
+    public long getVersion(int id) {
+        return versions.getOrDefault(id, 0L);
+    }
+
+    /**
+     * @param since version known by the client
+     * @return      ids of the contracts, which changed or got removed since, or null, if the changes are not known
+     *              anymore (see ChangeLog)
+     */
+    public ChangeLog.Delta changesSince(long since) {
+        return changes.since(since);
+    }
+
+    /**
+     * returns all contracts ordered by id without blocking writers
+     * @return immutable snapshot of all contracts
+     */
+    public List<Contract> values() {
+        Snapshot current = snapshot;
+        long currentVersion = version.get();
+        if (current.version() == currentVersion) return current.contracts();
+
+        // the version is read before copying, so a snapshot never claims to be newer than its content
+        List<Contract> contracts = List.copyOf(sorted.values());
+        snapshot = new Snapshot(currentVersion, contracts);
+        return contracts;
+    }
+
+    /**
+     * returns a page of contracts ordered by id; the id of the last contract is the cursor for the next page
+     * @param afterId cursor: only contracts with a greater id are returned (0 for the first page)
+     * @param limit   maximum number of contracts
+     * @return        immutable list of at most limit contracts
+     */
+    public List<Contract> page(int afterId, int limit) {
+        return sorted.tailMap(afterId, false).values().stream().limit(limit).toList();
+    }
+
+    /**
+     * @return iterator over a snapshot of all contracts ordered by id
+     */
+    @Override
+    public Iterator<Contract> iterator() {
+        return values().iterator();
+    }
+}
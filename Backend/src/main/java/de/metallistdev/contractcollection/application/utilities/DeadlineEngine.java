@@ -0,0 +1,159 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * index of the upcoming cancellation deadlines of all contracts
+ * <p>
+ * a contract renews every contractPeriod months after its startDate and has to be cancelled periodOfNotice weeks
+ * before the end of the current period. The start date is parsed once, when the contract gets added or updated;
+ * the deadlines are kept in a map ordered by date, which is maintained as listener of a ContractRepository.
+ * Deadlines, which have passed, are moved to the next period lazily on the next query, so a query costs
+ * O(log n + matches).
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+@Slf4j
+public class DeadlineEngine implements ContractListener {
+
+    /**
+     * next date by which a contract has to be cancelled
+     * @param contract  the contract
+     * @param deadline  last day to give notice
+     * @param periodEnd end of the contractual period, which is cancelled by this notice
+     */
+    public record Deadline(Contract contract, LocalDate deadline, LocalDate periodEnd) {}
+
+    /** parsed schedule of a contract and its current deadline */
+    private record Schedule(Contract contract, LocalDate start, int periodMonths, int noticeWeeks, Deadline next) {
+        private Key key() {
+            return new Key(next.deadline(), contract.getId());
+        }
+    }
+
+    /** position in the queue: ordered by deadline, then by id */
+    private record Key(LocalDate deadline, int id) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byDate = deadline.compareTo(other.deadline);
+            return byDate != 0 ? byDate : Integer.compare(id, other.id);
+        }
+    }
+
+    private final Clock clock;
+
+    private final Map<Integer, Schedule> schedules = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListMap<Key, Schedule> queue = new ConcurrentSkipListMap<>();
+
+    public DeadlineEngine() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock source of the current date
+     */
+    public DeadlineEngine(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * lists the deadlines from today until today + within, ordered by date
+     * @param within length of the time window
+     * @return       upcoming deadlines
+     */
+    public List<Deadline> upcoming(Period within) {
+        LocalDate today = LocalDate.now(clock);
+        advance(today);
+
+        Key until = new Key(today.plus(within), Integer.MAX_VALUE);
+        return queue.headMap(until, true).values().stream().map(Schedule::next).toList();
+    }
+
+    /**
+     * @return number of contracts with a valid schedule
+     */
+    public int size() {
+        return schedules.size();
+    }
+
+    /**
+     * moves deadlines, which have passed, to the next period of their contract
+     */
+    private synchronized void advance(LocalDate today) {
+        Map.Entry<Key, Schedule> first;
+        while ((first = queue.firstEntry()) != null && first.getKey().deadline().isBefore(today)) {
+            Schedule passed = queue.pollFirstEntry().getValue();
+            Schedule next = schedule(passed.contract(), passed.start(), passed.periodMonths(), passed.noticeWeeks(), today);
+            schedules.put(next.contract().getId(), next);
+            queue.put(next.key(), next);
+        }
+    }
+
+    @Override
+    public synchronized void contractAdded(Contract contract) {
+        LocalDate start;
+        try {
+            start = LocalDate.parse(contract.getStartDate());
+        } catch (DateTimeParseException | NullPointerException e) {
+            log.debug("Contract {} has no valid start date, no deadline scheduled.", contract.getId());
+            return;
+        }
+        if (contract.getContractPeriod() <= 0) return;
+
+        Schedule schedule = schedule(contract, start, contract.getContractPeriod(),
+                Math.max(contract.getPeriodOfNotice(), 0), LocalDate.now(clock));
+        schedules.put(contract.getId(), schedule);
+        queue.put(schedule.key(), schedule);
+    }
+
+    @Override
+    public synchronized void contractUpdated(Contract previous, Contract current) {
+        contractRemoved(previous);
+        contractAdded(current);
+    }
+
+    @Override
+    public synchronized void contractRemoved(Contract contract) {
+        Schedule schedule = schedules.remove(contract.getId());
+        if (schedule != null) queue.remove(schedule.key());
+    }
+
+    @Override
+    public synchronized void contractsCleared() {
+        schedules.clear();
+        queue.clear();
+    }
+
+    /**
+     * computes the first deadline on or after today
+     */
+    private static Schedule schedule(Contract contract, LocalDate start, int periodMonths, int noticeWeeks,
+                                     LocalDate today) {
+        // estimate the number of elapsed periods and correct the estimate by at most a few steps
+        long months = Math.max(ChronoUnit.MONTHS.between(start, today.plusWeeks(noticeWeeks)), 0);
+        long periods = Math.max(months / periodMonths, 1);
+        while (periods > 1 && !deadline(start, periods - 1, periodMonths, noticeWeeks).isBefore(today)) periods--;
+        while (deadline(start, periods, periodMonths, noticeWeeks).isBefore(today)) periods++;
+
+        LocalDate periodEnd = start.plusMonths(periods * periodMonths);
+        return new Schedule(contract, start, periodMonths, noticeWeeks,
+                new Deadline(contract, periodEnd.minusWeeks(noticeWeeks), periodEnd));
+    }
+
+    private static LocalDate deadline(LocalDate start, long periods, int periodMonths, int noticeWeeks) {
+        return start.plusMonths(periods * periodMonths).minusWeeks(noticeWeeks);
+    }
+}
@@ -7,17 +7,30 @@ import javax.crypto.*;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 @Slf4j
 public abstract class EncryptionUtil {
+    @Getter
     private static final int KEYSIZE = 256;
 
     @Getter
@@ -25,11 +38,20 @@ public abstract class EncryptionUtil {
 
     @Getter
     private static final int GCM_TAG_LENGTH = 16;
+
+    @Getter
+    private static final int SALT_LENGTH = 16;
+
+    @Getter
     private static final int ITERATION_COUNT = 65536;
     private static final String KEY_ALGO_LONG = "PBKDF2WithHmacSHA256";
     private static final String KEY_ALGO_SHORT = "AES";
     private static final String CIPHER_ALGO = "AES/GCM/NoPadding";
 
+    /** plaintext bytes per chunk of the chunked format */
+    @Getter
+    private static final int CHUNK_SIZE = 256 * 1024;
+
     /**
      * private constructor
      */
@@ -50,6 +72,31 @@ public abstract class EncryptionUtil {
         return new SecretKeySpec(factory.generateSecret(spec).getEncoded(), KEY_ALGO_SHORT);
     }
 
+    /**
+     * generates a key derived from a provided password with explicit KDF parameters (as stored in a vault header)
+     * @param password   provided plaintext password
+     * @param salt       random salt of the vault
+     * @param iterations PBKDF2 iteration count
+     * @param keySize    key size in bits
+     * @return           secret key
+     */
+    protected static SecretKey generateKeyFromPassword(String password, byte[] salt, int iterations, int keySize)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keySize);
+        SecretKeyFactory factory = SecretKeyFactory.getInstance(KEY_ALGO_LONG);
+        return new SecretKeySpec(factory.generateSecret(spec).getEncoded(), KEY_ALGO_SHORT);
+    }
+
+    /**
+     * generates a random salt for the key derivation
+     * @return  salt of SALT_LENGTH bytes
+     */
+    protected static byte[] generateSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+
     /**
      * generates a parameter specs for AES in GCM mode including an IV, so that no cipher equals another even with the
      * exact same input
@@ -116,11 +163,7 @@ public abstract class EncryptionUtil {
 
         // fetch IV length
         int ivLength = byteBuffer.getInt();
-        if (ivLength < 12 || ivLength >= 16) {
-            IllegalArgumentException e = new IllegalArgumentException("IV length is incorrect.");
-            log.error(e.getMessage(), e);
-            throw e;
-        }
+        checkIVLength(ivLength);
 
         // fetch IV
         byte[] iv = new byte[ivLength];
@@ -140,6 +183,371 @@ public abstract class EncryptionUtil {
 
         return new String(cipher.doFinal(ciphertext));
     }
+
+    /**
+     * encrypts a given plaintext using AES-GCM with an already derived key
+     * @param plaintext         data to encrypt
+     * @param secretKey         derived key
+     * @param gcmParameterSpec  fresh GCM parameters (see generateGCMSpecs)
+     * @return                  raw ciphertext including the GCM tag
+     */
+    public static byte[] encrypt(byte[] plaintext, SecretKey secretKey, GCMParameterSpec gcmParameterSpec)
+            throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidAlgorithmParameterException,
+            InvalidKeyException, BadPaddingException, IllegalBlockSizeException {
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, gcmParameterSpec);
+        return cipher.doFinal(plaintext);
+    }
+
+    /**
+     * decrypts a raw ciphertext using an already derived key
+     * @param ciphertext  raw ciphertext including the GCM tag
+     * @param secretKey   derived key
+     * @param iv          IV used for encryption
+     * @return            plaintext
+     */
+    public static byte[] decrypt(byte[] ciphertext, SecretKey secretKey, byte[] iv)
+            throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidAlgorithmParameterException,
+            InvalidKeyException, BadPaddingException, IllegalBlockSizeException, IllegalArgumentException {
+        checkIVLength(iv.length);
+
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, regenerateGCMSpecs(iv));
+        return cipher.doFinal(ciphertext);
+    }
+
+    /**
+     * encrypts a given plaintext using AES-GCM and authenticates additional data, which isn't encrypted
+     * @param plaintext         data to encrypt
+     * @param secretKey         derived key
+     * @param gcmParameterSpec  fresh GCM parameters (see generateGCMSpecs)
+     * @param aad               additional authenticated data, e.g. the position of a record
+     * @return                  raw ciphertext including the GCM tag
+     */
+    public static byte[] encrypt(byte[] plaintext, SecretKey secretKey, GCMParameterSpec gcmParameterSpec, byte[] aad)
+            throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidAlgorithmParameterException,
+            InvalidKeyException, BadPaddingException, IllegalBlockSizeException {
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, gcmParameterSpec);
+        cipher.updateAAD(aad);
+        return cipher.doFinal(plaintext);
+    }
+
+    /**
+     * decrypts a raw ciphertext and verifies the additional authenticated data
+     * @param ciphertext  raw ciphertext including the GCM tag
+     * @param secretKey   derived key
+     * @param iv          IV used for encryption
+     * @param aad         additional authenticated data used for encryption
+     * @return            plaintext
+     */
+    public static byte[] decrypt(byte[] ciphertext, SecretKey secretKey, byte[] iv, byte[] aad)
+            throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidAlgorithmParameterException,
+            InvalidKeyException, BadPaddingException, IllegalBlockSizeException, IllegalArgumentException {
+        checkIVLength(iv.length);
+
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, regenerateGCMSpecs(iv));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(ciphertext);
+    }
+
+    /**
+     * @param plaintextLength length of the plaintext in bytes
+     * @param chunkSize       plaintext bytes per chunk
+     * @return                number of chunks; an empty plaintext still gets one (empty) chunk
+     */
+    public static int chunkCount(long plaintextLength, int chunkSize) {
+        long count = Math.max((plaintextLength + chunkSize - 1) / chunkSize, 1);
+        if (count > Integer.MAX_VALUE) throw new IllegalArgumentException("Plaintext is too large.");
+        return (int) count;
+    }
+
+    /**
+     * wraps a channel into a stream, which encrypts everything written to it as independent AES-GCM chunks
+     * <p>
+     * chunk i holds the plaintext bytes [i * chunkSize, (i + 1) * chunkSize) followed by its tag. Its nonce is the
+     * IV with the last four bytes XOR i, and its index and the number of chunks are authenticated, so chunks can
+     * neither be reordered nor dropped. A full chunk is encrypted on the common fork-join pool while the next one is
+     * filled; at most one chunk per worker is in flight, so the stream never holds more than a few chunks of
+     * plaintext. Closing the stream writes the last chunk and fails, if the plaintext didn't fill exactly the
+     * announced number of chunks.
+     * @param output    target channel; written at absolute positions (not closed)
+     * @param position  position of the first chunk in the channel
+     * @param secretKey derived key
+     * @param iv        fresh IV (see generateGCMSpecs), from which the nonces of the chunks are derived
+     * @param chunkSize plaintext bytes per chunk
+     * @param count     number of chunks (see chunkCount), which is authenticated by every chunk
+     * @return          plaintext stream
+     */
+    public static OutputStream newChunkedEncryptingStream(FileChannel output, long position, SecretKey secretKey,
+                                                          byte[] iv, int chunkSize, int count) {
+        checkIVLength(iv.length);
+        if (chunkSize <= 0 || count <= 0) throw new IllegalArgumentException("Invalid chunk layout.");
+        return new ChunkedEncryptingStream(output, position, secretKey, iv, chunkSize, count);
+    }
+
+    /**
+     * encrypts a single chunk and writes it to its position in the channel
+     */
+    private static void encryptChunk(ByteBuffer plaintext, SecretKey secretKey, byte[] iv, int chunkSize, int index,
+                                     int count, FileChannel output, long position)
+            throws IOException, GeneralSecurityException {
+        ByteBuffer chunk = ByteBuffer.allocate(plaintext.remaining() + GCM_TAG_LENGTH);
+
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, chunkSpec(iv, index));
+        cipher.updateAAD(chunkAad(index, count));
+        cipher.doFinal(plaintext, chunk);
+        chunk.flip();
+
+        long target = position + (long) index * (chunkSize + GCM_TAG_LENGTH);
+        while (chunk.hasRemaining()) target += output.write(chunk, target);
+    }
+
+    /**
+     * reads and decrypts the chunks of a channel as a stream (see newChunkedEncryptingStream)
+     * <p>
+     * the chunks ahead of the reader are read and decrypted on the common fork-join pool, at most one chunk per
+     * worker, so the stream never holds more than a few chunks. A chunk is only handed out after it has been
+     * authenticated; a chunk, which fails authentication, fails the read with an IOException caused by an
+     * AEADBadTagException.
+     * @param input     source channel; read at absolute positions (not closed)
+     * @param position  position of the first chunk in the channel
+     * @param length    length of all chunks including their tags
+     * @param secretKey derived key
+     * @param iv        IV used for encryption
+     * @param chunkSize plaintext bytes per chunk
+     * @param count     number of chunks
+     * @return          plaintext stream
+     * @throws IllegalBlockSizeException if the length doesn't match the number of chunks
+     */
+    public static InputStream newChunkedDecryptingStream(FileChannel input, long position, long length,
+                                                         SecretKey secretKey, byte[] iv, int chunkSize, int count)
+            throws IllegalBlockSizeException {
+        checkIVLength(iv.length);
+        long stride = (long) chunkSize + GCM_TAG_LENGTH;
+        long lastLength = length - (count - 1) * stride - GCM_TAG_LENGTH;
+        if (chunkSize <= 0 || count <= 0 || lastLength < 0 || lastLength > chunkSize || (lastLength == 0 && count > 1))
+            throw new IllegalBlockSizeException("Chunked ciphertext has an invalid length.");
+        return new ChunkedDecryptingStream(input, position, secretKey, iv, chunkSize, count, (int) lastLength);
+    }
+
+    /**
+     * reads a single chunk from its position in the channel and decrypts it
+     * @return plaintext of the chunk, ready for reading
+     */
+    private static ByteBuffer decryptChunk(FileChannel input, long position, SecretKey secretKey, byte[] iv,
+                                           int chunkSize, int index, int count, int length)
+            throws IOException, GeneralSecurityException {
+        ByteBuffer chunk = ByteBuffer.allocate(length + GCM_TAG_LENGTH);
+        long source = position + (long) index * (chunkSize + GCM_TAG_LENGTH);
+        while (chunk.hasRemaining()) {
+            if (input.read(chunk, source + chunk.position()) < 0)
+                throw new EOFException("Chunk " + index + " is truncated.");
+        }
+        chunk.flip();
+
+        ByteBuffer plaintext = ByteBuffer.allocate(length);
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, chunkSpec(iv, index));
+        cipher.updateAAD(chunkAad(index, count));
+        cipher.doFinal(chunk, plaintext);
+        return plaintext.flip();
+    }
+
+    private static GCMParameterSpec chunkSpec(byte[] iv, int index) {
+        byte[] nonce = iv.clone();
+        for (int i = 0; i < Integer.BYTES; i++) nonce[nonce.length - 1 - i] ^= (byte) (index >>> (8 * i));
+        return regenerateGCMSpecs(nonce);
+    }
+
+    private static byte[] chunkAad(int index, int count) {
+        return ByteBuffer.allocate(2 * Integer.BYTES).putInt(index).putInt(count).array();
+    }
+
+    /**
+     * collects the plaintext of a chunk and hands full chunks to the fork-join pool (see newChunkedEncryptingStream)
+     */
+    private static final class ChunkedEncryptingStream extends OutputStream {
+        private final FileChannel output;
+        private final long position;
+        private final SecretKey secretKey;
+        private final byte[] iv;
+        private final int chunkSize;
+        private final int count;
+        private final int maxPending = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        private final Deque<Future<?>> pending = new ArrayDeque<>();
+
+        private byte[] buffer;
+        private int filled;
+        private int index;
+        private boolean closed;
+
+        private ChunkedEncryptingStream(FileChannel output, long position, SecretKey secretKey, byte[] iv,
+                                        int chunkSize, int count) {
+            this.output = output;
+            this.position = position;
+            this.secretKey = secretKey;
+            this.iv = iv;
+            this.chunkSize = chunkSize;
+            this.count = count;
+            this.buffer = new byte[chunkSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            if (closed) throw new IOException("Stream is closed.");
+            while (length > 0) {
+                if (index == count) throw new IOException("Plaintext exceeds " + count + " chunks.");
+                int copied = Math.min(length, chunkSize - filled);
+                System.arraycopy(data, offset, buffer, filled, copied);
+                filled += copied;
+                offset += copied;
+                length -= copied;
+                if (filled == chunkSize) submit();
+            }
+        }
+
+        private void submit() throws IOException {
+            if (index >= count) throw new IOException("Plaintext exceeds " + count + " chunks.");
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, filled);
+            int chunkIndex = index++;
+            pending.add(ForkJoinPool.commonPool().submit(() -> {
+                encryptChunk(chunk, secretKey, iv, chunkSize, chunkIndex, count, output, position);
+                return null;
+            }));
+            buffer = new byte[chunkSize];
+            filled = 0;
+            while (pending.size() > maxPending) await(pending.poll());
+        }
+
+        private static void await(Future<?> task) throws IOException {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while encrypting a chunk.");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                throw new IOException("Failed to encrypt a chunk.", e.getCause());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                // an empty plaintext still gets one (empty) chunk
+                if (filled > 0 || index == 0) submit();
+                while (!pending.isEmpty()) await(pending.poll());
+            } finally {
+                for (Future<?> task : pending) task.cancel(false);
+                buffer = null;
+            }
+            if (index != count) throw new IOException("Plaintext filled " + index + " instead of " + count + " chunks.");
+        }
+    }
+
+    /**
+     * hands out the plaintext of the chunks in order, while the next ones are decrypted on the fork-join pool
+     * (see newChunkedDecryptingStream)
+     */
+    private static final class ChunkedDecryptingStream extends InputStream {
+        private final FileChannel input;
+        private final long position;
+        private final SecretKey secretKey;
+        private final byte[] iv;
+        private final int chunkSize;
+        private final int count;
+        private final int lastLength;
+        private final int maxPending = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        private final Deque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+
+        private ByteBuffer current = ByteBuffer.allocate(0);
+        private int index;
+        private boolean closed;
+
+        private ChunkedDecryptingStream(FileChannel input, long position, SecretKey secretKey, byte[] iv,
+                                        int chunkSize, int count, int lastLength) {
+            this.input = input;
+            this.position = position;
+            this.secretKey = secretKey;
+            this.iv = iv;
+            this.chunkSize = chunkSize;
+            this.count = count;
+            this.lastLength = lastLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : Byte.toUnsignedInt(single[0]);
+        }
+
+        @Override
+        public int read(byte[] data, int offset, int length) throws IOException {
+            if (closed) throw new IOException("Stream is closed.");
+            if (length == 0) return 0;
+            while (!current.hasRemaining()) {
+                while (index < count && pending.size() < maxPending) submit();
+                if (pending.isEmpty()) return -1;
+                current = await(pending.poll());
+            }
+            int copied = Math.min(length, current.remaining());
+            current.get(data, offset, copied);
+            return copied;
+        }
+
+        private void submit() {
+            int chunkIndex = index++;
+            int length = chunkIndex == count - 1 ? lastLength : chunkSize;
+            pending.add(ForkJoinPool.commonPool().submit(() ->
+                    decryptChunk(input, position, secretKey, iv, chunkSize, chunkIndex, count, length)));
+        }
+
+        private static ByteBuffer await(Future<ByteBuffer> task) throws IOException {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decrypting a chunk.");
+            } catch (ExecutionException e) {
+                // the common pool wraps the checked exceptions of a task into runtime exceptions
+                Throwable cause = e.getCause();
+                while (cause instanceof RuntimeException && cause.getCause() != null) cause = cause.getCause();
+                if (cause instanceof IOException io) throw io;
+                throw new IOException("Failed to decrypt a chunk.", cause);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            for (Future<ByteBuffer> task : pending) task.cancel(false);
+            pending.clear();
+            current = null;
+        }
+    }
+
+    /**
+     * validates the length of a stored IV
+     * @param ivLength  length of the IV in bytes
+     */
+    private static void checkIVLength(int ivLength) {
+        if (ivLength < 12 || ivLength >= 16) {
+            IllegalArgumentException e = new IllegalArgumentException("IV length is incorrect.");
+            log.error(e.getMessage(), e);
+            throw e;
+        }
+    }
 }
 
 /* sources / inspiration:
@@ -0,0 +1,291 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+import de.metallistdev.contractcollection.commons.Contract;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * pushes every change of the contracts to the subscribers of /events as server-sent event
+ * <p>
+ * an event is serialized once, while the repository holds its write lock, and then put into a bounded queue per
+ * subscriber; each queue is drained by a sender thread of its own, so a slow client never blocks a change or another
+ * client. A subscriber, whose queue is full or whose send blocks longer than the send timeout, is dropped: the client
+ * has to reconnect and catch up via /changes, starting from the id (version) of the last event it received.
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+@Slf4j
+@Component
+public class EventBroadcaster implements ContractListener {
+    public static final String OPERATION = "op";
+    public static final String ADD = "add";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+    public static final String CLEAR = "clear";
+
+    /** serialized change and the version of the contracts after it */
+    private record Event(long version, String data) {}
+
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+
+    private final LongSupplier version;
+
+    private final int queueCapacity;
+
+    private final long timeout;
+
+    private final long sendTimeout;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService sender = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "event-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "event-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * creates a broadcaster, which gets notified about the changes of the session
+     * @param session       session, whose changes are pushed
+     * @param queueCapacity number of events, which a subscriber may lag behind before it is dropped
+     * @param timeout       time after which a subscription ends and the client has to reconnect
+     * @param sendTimeout   time a single send may block before the subscriber is dropped
+     */
+    @Autowired
+    public EventBroadcaster(SessionUtil session,
+                            @Value("${contractcollection.events.queue-capacity:256}") int queueCapacity,
+                            @Value("${contractcollection.events.timeout:30m}") Duration timeout,
+                            @Value("${contractcollection.events.send-timeout:10s}") Duration sendTimeout) {
+        this(session::getVersion, queueCapacity, timeout, sendTimeout);
+        session.addListener(this);
+    }
+
+    /**
+     * @param version       current version of the contracts
+     * @param queueCapacity number of events, which a subscriber may lag behind before it is dropped
+     * @param timeout       time after which a subscription ends and the client has to reconnect
+     * @param sendTimeout   time a single send may block before the subscriber is dropped
+     */
+    public EventBroadcaster(LongSupplier version, int queueCapacity, Duration timeout, Duration sendTimeout) {
+        this.version = version;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.timeout = timeout.toMillis();
+        this.sendTimeout = Math.max(1, sendTimeout.toMillis());
+        long period = Math.max(10, this.sendTimeout / 2);
+        watchdog.scheduleWithFixedDelay(this::dropStalled, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of connected subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * subscribes a new client
+     * @return emitter, which streams the events to the client
+     */
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeout));
+    }
+
+    /**
+     * subscribes a client, which receives the events through the given emitter
+     * @param emitter emitter of the client
+     * @return        the emitter
+     */
+    public SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        subscribers.add(subscriber);
+        log.info("Client subscribed to events at version {}, {} subscribers.", version.getAsLong(), subscribers.size());
+        return emitter;
+    }
+
+    @Override
+    public void contractAdded(Contract contract) {
+        publish(ADD, contract, 0);
+    }
+
+    @Override
+    public void contractUpdated(Contract previous, Contract current) {
+        publish(UPDATE, current, 0);
+    }
+
+    @Override
+    public void contractRemoved(Contract contract) {
+        publish(DELETE, null, contract.getId());
+    }
+
+    @Override
+    public void contractsCleared() {
+        publish(CLEAR, null, 0);
+    }
+
+    private void publish(String operation, Contract contract, int id) {
+        if (subscribers.isEmpty()) return;
+
+        long current = version.getAsLong();
+        ObjectNode change = mapper.createObjectNode().put(OPERATION, operation).put("version", current);
+        if (contract != null) change.set("contract", mapper.valueToTree(contract));
+        if (id > 0) change.put("id", id);
+        Event event = new Event(current, mapper.writeValueAsString(change));
+        for (Subscriber subscriber : subscribers) subscriber.offer(event);
+    }
+
+    /**
+     * drops the subscribers, whose current send blocks longer than the send timeout
+     */
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > TimeUnit.MILLISECONDS.toNanos(sendTimeout)) {
+                log.warn("Client didn't accept an event within {} ms, dropping its subscription.", sendTimeout);
+                subscriber.abandon();
+            }
+        }
+    }
+
+    /**
+     * ends all subscriptions
+     */
+    @PreDestroy
+    public void close() {
+        watchdog.shutdownNow();
+        for (Subscriber subscriber : subscribers) subscriber.complete();
+        sender.shutdownNow();
+    }
+
+    /**
+     * client with its queue of events, which haven't been sent yet
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        /** whether a sender thread is draining the queue */
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        /** start ({@link System#nanoTime()}) of the send in progress, 0 while no send is in progress */
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(Event event) {
+            if (closed) return;
+            if (!queue.offer(event)) {
+                log.warn("Client lags more than {} events behind, dropping its subscription.", queueCapacity);
+                complete();
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!draining.compareAndSet(false, true)) return;
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                log.debug("Event sender shut down, event not sent.");
+                draining.set(false);
+            }
+        }
+
+        private void drain() {
+            try {
+                Event event;
+                while (!closed && (event = queue.poll()) != null) {
+                    sendingSince = System.nanoTime();
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(event.version()))
+                            .data(event.data(), MediaType.APPLICATION_JSON));
+                    sendingSince = 0;
+                }
+            } catch (Exception e) {
+                log.debug("Failed to send an event, closing the subscription: {}", e.getMessage());
+                complete();
+            } finally {
+                sendingSince = 0;
+                draining.set(false);
+            }
+            // an event may have been queued after the last poll, but before draining was reset
+            if (!closed && !queue.isEmpty()) schedule();
+        }
+
+        /**
+         * ends the subscription from the server side
+         */
+        private void complete() {
+            if (closed) return;
+            close();
+            completeEmitter();
+        }
+
+        /**
+         * ends the subscription of a client, whose send is stuck; the emitter can only be completed once the send
+         * returns, so that is left to a sender thread instead of the watchdog
+         */
+        private void abandon() {
+            if (closed) return;
+            close();
+            try {
+                sender.execute(this::completeEmitter);
+            } catch (RejectedExecutionException e) {
+                log.debug("Event sender shut down, subscription not completed.");
+            }
+        }
+
+        private void completeEmitter() {
+            try {
+                emitter.complete();
+            } catch (Exception e) {
+                log.debug(e.getMessage());
+            }
+        }
+
+        /**
+         * forgets the subscriber, e.g. after the client disconnected
+         */
+        private void close() {
+            closed = true;
+            queue.clear();
+            if (subscribers.remove(this)) log.info("Client unsubscribed from events, {} subscribers.", subscribers.size());
+        }
+    }
+}
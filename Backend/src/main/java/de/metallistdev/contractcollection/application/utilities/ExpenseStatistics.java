@@ -0,0 +1,118 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * running totals of the expenses of all contracts and per category
+ * <p>
+ * the totals are maintained as listener of a ContractRepository and change in O(1) per added, updated or removed
+ * contract, so reading them never requires a scan. Sums are kept in cents, so that they don't drift over many
+ * changes.
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+public class ExpenseStatistics implements ContractListener {
+
+    /**
+     * number of contracts and their yearly costs
+     * @param count       number of contracts
+     * @param yearlyCents sum of expenses * cycle in cents
+     */
+    public record Totals(int count, long yearlyCents) {
+        public static final Totals EMPTY = new Totals(0, 0);
+
+        /**
+         * @return yearly costs
+         */
+        public double getYearly() {
+            return yearlyCents / 100.0;
+        }
+
+        /**
+         * @return average monthly costs, rounded to cents
+         */
+        public double getMonthly() {
+            return Math.round(yearlyCents / 12.0) / 100.0;
+        }
+
+        private Totals plus(Contract contract) {
+            return new Totals(count + 1, yearlyCents + ExpenseStatistics.yearlyCents(contract));
+        }
+
+        private Totals minus(Contract contract) {
+            return new Totals(count - 1, yearlyCents - ExpenseStatistics.yearlyCents(contract));
+        }
+    }
+
+    private volatile Totals total = Totals.EMPTY;
+
+    private final Map<String, Totals> categories = new ConcurrentHashMap<>();
+
+    /**
+     * @param contract contract
+     * @return         costs per year in cents: expenses per payment * payments per year
+     */
+    public static long yearlyCents(Contract contract) {
+        return Math.round(contract.getExpenses() * 100.0) * contract.getCycle();
+    }
+
+    /**
+     * @return totals over all contracts
+     */
+    public Totals getTotal() {
+        return total;
+    }
+
+    /**
+     * @return totals per category, sorted by category
+     */
+    public Map<String, Totals> getCategories() {
+        return new TreeMap<>(categories);
+    }
+
+    @Override
+    public void contractAdded(Contract contract) {
+        total = total.plus(contract);
+        addToCategory(contract);
+    }
+
+    @Override
+    public void contractUpdated(Contract previous, Contract current) {
+        // the total is replaced in one step, so readers never see the contract missing
+        total = total.minus(previous).plus(current);
+        removeFromCategory(previous);
+        addToCategory(current);
+    }
+
+    @Override
+    public void contractRemoved(Contract contract) {
+        total = total.minus(contract);
+        removeFromCategory(contract);
+    }
+
+    @Override
+    public void contractsCleared() {
+        total = Totals.EMPTY;
+        categories.clear();
+    }
+
+    private void addToCategory(Contract contract) {
+        categories.merge(categoryOf(contract), Totals.EMPTY.plus(contract), (totals, added) -> totals.plus(contract));
+    }
+
+    private void removeFromCategory(Contract contract) {
+        categories.computeIfPresent(categoryOf(contract), (category, totals) -> {
+            Totals remaining = totals.minus(contract);
+            return remaining.count() == 0 ? null : remaining;
+        });
+    }
+
+    private static String categoryOf(Contract contract) {
+        return contract.getCategory() == null ? "" : contract.getCategory();
+    }
+}
@@ -1,7 +1,10 @@
 package de.metallistdev.contractcollection.application.utilities;
 
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
 import tools.jackson.databind.SerializationFeature;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.databind.node.ArrayNode;
@@ -9,28 +12,36 @@ import tools.jackson.databind.node.ObjectNode;
 import de.metallistdev.contractcollection.commons.Contract;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.InputStream;
-import java.util.Arrays;
-
-import static de.metallistdev.contractcollection.application.utilities.ReasonCodes.RC_IMPORT_FAILED;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.List;
 
 /**
  * implements a bunch of helper methods to fill response jsons
  *
  * @author Metallist-dev
- * @version 0.1
+ * @version 0.2
  */
 @Slf4j
-@SuppressWarnings("java:S1874")
 public class HttpResponse {
     private static final ObjectMapper mapper = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
 
-    private static final String BASEPATH = "static/templates/responses/";
+    private static final ObjectWriter streamWriter = mapper.writer()
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(StreamWriteFeature.AUTO_CLOSE_TARGET);
+
+    // templates are compiled once, so that a response doesn't require any resource lookup or parsing
+    private static final ResponseTemplate SINGLE_CONTRACT = ResponseTemplate.compile(mapper, "singleContract.json");
+    private static final ResponseTemplate DELETE_CONTRACT = ResponseTemplate.compile(mapper, "deleteContract.json");
+    private static final ResponseTemplate ALL_CONTRACTS = ResponseTemplate.compile(mapper, "allContracts.json");
+    private static final ResponseTemplate SHUTDOWN = ResponseTemplate.compile(mapper, "shutdown.json");
+    private static final ResponseTemplate TRANSFER = ResponseTemplate.compile(mapper, "transfer.json");
+    private static final ResponseTemplate STATISTICS = ResponseTemplate.compile(mapper, "statistics.json");
+    private static final ResponseTemplate BATCH = ResponseTemplate.compile(mapper, "batch.json");
+    private static final ResponseTemplate CHANGES = ResponseTemplate.compile(mapper, "changes.json");
 
-    private static final String PLACEHOLDER_MESSAGE = "#MESSAGE#";
-    private static final String FIELDNAME_MESSAGE = "message";
-    private static final String PLACEHOLDER_RC = "#REASON-CODE#";
-    private static final String FIELDNAME_RC = "reasonCode";
+    /** distinguishes the versions of this run from the ones of earlier runs, which start at 0 again */
+    private static final String ETAG_EPOCH = Long.toHexString(new SecureRandom().nextLong());
 
     /**
      * private constructor
@@ -47,43 +58,7 @@ public class HttpResponse {
      * @return RC and message in head and requested or empty contract in body
      */
     public static JsonNode requestSingleContract(ReasonCodes reasonCode, Contract contract) {
-        try {
-            InputStream stream = JsonNode.class.getClassLoader().getResourceAsStream(BASEPATH + "singleContract.json");
-            JsonNode node = mapper.readTree(stream);
-
-            String jsonString = mapper.writeValueAsString(node);
-
-            String newJsonString = jsonString
-                    .replace(PLACEHOLDER_MESSAGE, reasonCode.getDescription())
-                    .replace(PLACEHOLDER_RC, reasonCode.getCodenumber())
-                    .replace("#CATEGORY#", contract.getCategory())
-                    .replace("#NAME#", contract.getName())
-                    .replace("\"expenses\": 0.00", "\"expenses\": " + contract.getExpenses())
-                    .replace("\"cycle\": 0", "\"cycle\": " + contract.getCycle())
-                    .replace("#CUSTOMER#", contract.getCustomerNr())
-                    .replace("#CONTRACT#", contract.getContractNr())
-                    .replace("#STARTDATE#", contract.getStartDate())
-                    .replace("\"contractPeriod\": 0", "\"contractPeriod\": " + contract.getContractPeriod())
-                    .replace("\"periodOfNotice\": 0", "\"periodOfNotice\": " + contract.getPeriodOfNotice())
-                    .replace("#DESCRIPTION#", contract.getDescription())
-                    .replace("#DOCUMENTS PATH#", contract.getDocumentPath());
-
-            return mapper.readTree(newJsonString);
-        } catch (Exception exception) {
-            log.debug(exception.getMessage());
-            log.debug(Arrays.toString(exception.getStackTrace()));
-
-            ObjectNode root = mapper.createObjectNode();
-            ObjectNode head = mapper.createObjectNode();
-
-            head.put(FIELDNAME_MESSAGE, reasonCode.getDescription());
-            head.put(FIELDNAME_RC, reasonCode.getCodenumber());
-
-            root.set("head", head);
-            root.set("body", contract.toJson());
-
-            return root;
-        }
+        return SINGLE_CONTRACT.create(reasonCode, contract.toJson());
     }
 
     /**
@@ -93,33 +68,7 @@ public class HttpResponse {
      * @return Json with RC and message in head and empty body
      */
     public static JsonNode requestDeleteContract(ReasonCodes reasonCode) {
-        try {
-            InputStream stream = JsonNode.class.getClassLoader().getResourceAsStream(BASEPATH + "singleContract.json");
-            JsonNode node = mapper.readTree(stream);
-
-            String jsonString = mapper.writeValueAsString(node);
-
-            String newJsonString = jsonString
-                    .replace(PLACEHOLDER_MESSAGE, reasonCode.getDescription())
-                    .replace(PLACEHOLDER_RC, reasonCode.getCodenumber());
-
-            return mapper.readTree(newJsonString);
-        } catch (Exception exception) {
-            log.error(exception.getMessage());
-            log.debug(Arrays.toString(exception.getStackTrace()));
-
-            ObjectNode root = mapper.createObjectNode();
-            ObjectNode head = mapper.createObjectNode();
-            ObjectNode body = mapper.createObjectNode();
-
-            head.put(FIELDNAME_MESSAGE, reasonCode.getDescription());
-            head.put(FIELDNAME_RC, reasonCode.getCodenumber());
-
-            root.set("head", head);
-            root.set("body", body);
-
-            return root;
-        }
+        return DELETE_CONTRACT.create(reasonCode);
     }
 
     /**
@@ -130,68 +79,231 @@ public class HttpResponse {
      * @return RC and message in head and list of contracts in body
      */
     public static JsonNode requestGetAllContracts(ReasonCodes reasonCode, Iterable<Contract> contracts) {
-        ObjectNode root = mapper.createObjectNode();
         ArrayNode body = mapper.createArrayNode();
+        for (Contract contract : contracts) body.add(contract.toJson());
+        return ALL_CONTRACTS.create(reasonCode, body);
+    }
 
-        try {
-            if (reasonCode == RC_IMPORT_FAILED) throw new IllegalAccessException(RC_IMPORT_FAILED.getDescription());
-            InputStream stream = JsonNode.class.getClassLoader().getResourceAsStream(BASEPATH + "allContracts.json");
-            JsonNode node = mapper.readTree(stream);
-            String jsonString = mapper.writeValueAsString(node);
+    /**
+     * fills the response for a requested shutdown
+     *
+     * @param reasonCode RC which has to be returned
+     * @return Json with RC and message in head
+     */
+    public static JsonNode requestShutdown(ReasonCodes reasonCode) {
+        return SHUTDOWN.create(reasonCode);
+    }
 
-            String newJsonString = jsonString
-                    .replace(PLACEHOLDER_MESSAGE, reasonCode.getDescription())
-                    .replace(PLACEHOLDER_RC, reasonCode.getCodenumber());
+    /**
+     * fills the response for a streamed import or export
+     *
+     * @param reasonCode RC which has to be returned
+     * @param processed  number of transferred contracts
+     * @return Json with RC and message in head and the number of contracts in body
+     */
+    public static JsonNode requestTransfer(ReasonCodes reasonCode, long processed) {
+        ObjectNode response = TRANSFER.create(reasonCode);
+        response.putObject(ResponseTemplate.FIELDNAME_BODY).put("processed", processed);
+        return response;
+    }
 
-            root.set("head", mapper.readTree(newJsonString).get("head"));
-        } catch (Exception exception) {
-            log.error(exception.getMessage());
-            log.debug(Arrays.toString(exception.getStackTrace()));
+    /**
+     * fills the response for the expense statistics
+     *
+     * @param reasonCode RC which has to be returned
+     * @param statistics running totals
+     * @return Json with RC and message in head and the totals overall and per category in body
+     */
+    public static JsonNode requestStatistics(ReasonCodes reasonCode, ExpenseStatistics statistics) {
+        ObjectNode response = STATISTICS.create(reasonCode);
+        ObjectNode body = response.putObject(ResponseTemplate.FIELDNAME_BODY);
+        putTotals(body, statistics.getTotal());
+
+        ObjectNode categories = body.putObject("categories");
+        statistics.getCategories().forEach((category, totals) -> putTotals(categories.putObject(category), totals));
+        return response;
+    }
 
-            ObjectNode head = mapper.createObjectNode();
+    private static void putTotals(ObjectNode node, ExpenseStatistics.Totals totals) {
+        node.put("count", totals.count());
+        node.put("yearly", totals.getYearly());
+        node.put("monthly", totals.getMonthly());
+    }
 
-            head.put(FIELDNAME_MESSAGE, reasonCode.getDescription());
-            head.put(FIELDNAME_RC, reasonCode.getCodenumber());
+    /**
+     * fills the response for the analytics of all contracts
+     *
+     * @param reasonCode RC which has to be returned
+     * @param summary    aggregated numbers
+     * @return Json with RC and message in head and the aggregated numbers in body
+     */
+    public static JsonNode requestAnalytics(ReasonCodes reasonCode, ContractColumns.Summary summary) {
+        ObjectNode response = STATISTICS.create(reasonCode);
+        ObjectNode body = response.putObject(ResponseTemplate.FIELDNAME_BODY);
+        body.put("count", summary.count());
+        body.put("yearly", summary.yearly());
+        body.put("monthly", summary.monthly());
+        body.put("averageExpenses", summary.averageExpenses());
+        body.put("minExpenses", summary.minExpenses());
+        body.put("maxExpenses", summary.maxExpenses());
+        body.put("averageContractPeriod", summary.averageContractPeriod());
+        body.put("averagePeriodOfNotice", summary.averagePeriodOfNotice());
+        return response;
+    }
 
-            root.set("head", head);
-        } finally {
-            for (Contract contract : contracts) body.add(contract.toJson());
-            root.set("body", body);
+    /**
+     * fills the response for upcoming cancellation deadlines
+     *
+     * @param reasonCode RC which has to be returned
+     * @param deadlines  deadlines ordered by date
+     * @return RC and message in head and list of deadlines with their contracts in body
+     */
+    public static JsonNode requestDeadlines(ReasonCodes reasonCode, List<DeadlineEngine.Deadline> deadlines) {
+        ArrayNode body = mapper.createArrayNode();
+        for (DeadlineEngine.Deadline deadline : deadlines) {
+            ObjectNode entry = body.addObject();
+            entry.put("deadline", deadline.deadline().toString());
+            entry.put("periodEnd", deadline.periodEnd().toString());
+            entry.set("contract", deadline.contract().toJson());
         }
-        return root;
+        return ALL_CONTRACTS.create(reasonCode, body);
     }
 
     /**
-     * fills the response for a requested shutdown
+     * fills the response for a batch of operations
      *
      * @param reasonCode RC which has to be returned
-     * @return Json with RC and message in head
+     * @param applied    whether the batch got applied or rejected
+     * @param results    results of the operations up to the first failure
+     * @return RC and message in head and the result of every operation in body
      */
-    public static JsonNode requestShutdown(ReasonCodes reasonCode) {
-        try {
-            InputStream stream = JsonNode.class.getClassLoader().getResourceAsStream(BASEPATH + "shutdown.json");
-            JsonNode node = mapper.readTree(stream);
+    public static JsonNode requestBatch(ReasonCodes reasonCode, boolean applied, List<BatchOperation.Result> results) {
+        ObjectNode response = BATCH.create(reasonCode);
+        ObjectNode body = response.putObject(ResponseTemplate.FIELDNAME_BODY);
+        body.put("applied", applied);
+
+        ArrayNode entries = body.putArray("results");
+        for (int index = 0; index < results.size(); index++) {
+            BatchOperation.Result result = results.get(index);
+            ObjectNode entry = entries.addObject();
+            entry.put("index", index);
+            entry.put("op", result.operation().type().name().toLowerCase());
+            entry.put("reasonCode", result.reasonCode().getCodenumber());
+            entry.put("message", result.reasonCode().getDescription());
+            if (result.contract() != null) entry.set("contract", result.contract().toJson());
+            else if (result.operation().id() > 0) entry.put("id", result.operation().id());
+        }
+        return response;
+    }
 
-            String jsonString = mapper.writeValueAsString(node);
+    /**
+     * streams the response for a single contract without building a tree first
+     *
+     * @param generator  target of the response
+     * @param reasonCode RC which has to be returned
+     * @param contract   contract object to send in body
+     */
+    public static void writeSingleContract(JsonGenerator generator, ReasonCodes reasonCode, Contract contract) {
+        generator.writeStartObject();
+        SINGLE_CONTRACT.writeHead(generator, reasonCode);
+        generator.writeName(ResponseTemplate.FIELDNAME_BODY);
+        generator.writePOJO(contract);
+        generator.writeEndObject();
+    }
 
-            String newJsonString = jsonString
-                    .replace(PLACEHOLDER_MESSAGE, reasonCode.getDescription())
-                    .replace(PLACEHOLDER_RC, reasonCode.getCodenumber());
+    /**
+     * streams the response for a single contract into the given output
+     *
+     * @param output     target of the response; stays open
+     * @param reasonCode RC which has to be returned
+     * @param contract   contract object to send in body
+     */
+    public static void writeSingleContract(OutputStream output, ReasonCodes reasonCode, Contract contract) {
+        try (JsonGenerator generator = streamWriter.createGenerator(output)) {
+            writeSingleContract(generator, reasonCode, contract);
+        }
+    }
 
-            return mapper.readTree(newJsonString);
-        } catch (Exception exception) {
-            log.error(exception.getMessage());
-            log.debug(Arrays.toString(exception.getStackTrace()));
+    /**
+     * streams the response for a list of contracts without building a tree first
+     *
+     * @param generator  target of the response
+     * @param reasonCode RC which has to be returned
+     * @param contracts  contracts to send in body
+     */
+    public static void writeAllContracts(JsonGenerator generator, ReasonCodes reasonCode, Iterable<Contract> contracts) {
+        generator.writeStartObject();
+        ALL_CONTRACTS.writeHead(generator, reasonCode);
+        generator.writeName(ResponseTemplate.FIELDNAME_BODY);
+        generator.writeStartArray();
+        for (Contract contract : contracts) generator.writePOJO(contract);
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
 
-            ObjectNode root = mapper.createObjectNode();
-            ObjectNode head = mapper.createObjectNode();
+    /**
+     * streams the response for a list of contracts into the given output, one contract at a time
+     *
+     * @param output     target of the response; stays open
+     * @param reasonCode RC which has to be returned
+     * @param contracts  contracts to send in body
+     */
+    public static void writeAllContracts(OutputStream output, ReasonCodes reasonCode, Iterable<Contract> contracts) {
+        try (JsonGenerator generator = streamWriter.createGenerator(output)) {
+            writeAllContracts(generator, reasonCode, contracts);
+        }
+    }
 
-            head.put(FIELDNAME_MESSAGE, reasonCode.getDescription());
-            head.put(FIELDNAME_RC, reasonCode.getCodenumber());
+    /**
+     * streams the changes of the contracts since a version into the given output, one contract at a time
+     *
+     * @param output     target of the response; stays open
+     * @param reasonCode RC which has to be returned
+     * @param changes    changed contracts and ids of removed ones
+     */
+    public static void writeChanges(OutputStream output, ReasonCodes reasonCode, ContractChanges changes) {
+        try (JsonGenerator generator = streamWriter.createGenerator(output)) {
+            generator.writeStartObject();
+            CHANGES.writeHead(generator, reasonCode);
+            generator.writeName(ResponseTemplate.FIELDNAME_BODY);
+            generator.writeStartObject();
+            generator.writeNumberProperty("version", changes.version());
+            generator.writeBooleanProperty("snapshot", changes.snapshot());
+            generator.writeName("contracts");
+            generator.writeStartArray();
+            for (Contract contract : changes.contracts()) generator.writePOJO(contract);
+            generator.writeEndArray();
+            generator.writeName("removed");
+            generator.writeStartArray();
+            for (int id : changes.removed()) generator.writeNumber(id);
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
 
-            root.set("head", head);
+    /**
+     * creates a strong entity tag for a version of the contracts
+     * @param version version of all contracts or of a single one
+     * @return        quoted entity tag
+     */
+    public static String eTag(long version) {
+        return "\"" + ETAG_EPOCH + "-" + version + "\"";
+    }
 
-            return root;
+    /**
+     * evaluates an If-None-Match header (weak comparison, as required by RFC 9110)
+     * @param ifNoneMatch value of the header or null
+     * @param eTag        current entity tag
+     * @return            true, if the client already has the current version
+     */
+    public static boolean notModified(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(eTag)) return true;
         }
+        return false;
     }
 }
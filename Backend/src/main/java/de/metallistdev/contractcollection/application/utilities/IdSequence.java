@@ -0,0 +1,74 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * allocator for contract ids
+ * <p>
+ * hands out ids from a monotonic counter, which is advanced past every id stored explicitly (e.g. while loading a
+ * file). Optionally, ids of deleted contracts are handed out again, lowest first. All operations are O(1) resp.
+ * O(log freed) and safe for concurrent use.
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+public class IdSequence {
+
+    private final AtomicInteger highest = new AtomicInteger(0);
+
+    private final ConcurrentSkipListSet<Integer> freed = new ConcurrentSkipListSet<>();
+
+    private final boolean reuseFreedIds;
+
+    /**
+     * @param reuseFreedIds whether ids of removed contracts are handed out again
+     */
+    public IdSequence(boolean reuseFreedIds) {
+        this.reuseFreedIds = reuseFreedIds;
+    }
+
+    /**
+     * allocates a new id
+     * @return id, which was not handed out or observed before (or was released again)
+     */
+    public int next() {
+        if (reuseFreedIds) {
+            Integer id = freed.pollFirst();
+            if (id != null) return id;
+        }
+        return highest.incrementAndGet();
+    }
+
+    /**
+     * registers an id, which got assigned from outside (e.g. read from a file)
+     * @param id id in use
+     */
+    public void observe(int id) {
+        highest.accumulateAndGet(id, Math::max);
+        if (reuseFreedIds) freed.remove(id);
+    }
+
+    /**
+     * returns the id of a removed contract
+     * @param id id, which is no longer in use
+     */
+    public void release(int id) {
+        if (reuseFreedIds && id > 0 && id <= highest.get()) freed.add(id);
+    }
+
+    /**
+     * restarts the sequence, e.g. after all contracts were removed
+     */
+    public void reset() {
+        highest.set(0);
+        freed.clear();
+    }
+
+    /**
+     * @return highest id handed out or observed so far
+     */
+    public int getHighest() {
+        return highest.get();
+    }
+}
@@ -0,0 +1,216 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.node.ObjectNode;
+import de.metallistdev.contractcollection.commons.Contract;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.SecretKey;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * records every change of a ContractRepository into the change journal of the vault
+ * <p>
+ * while a snapshot of the vault is written, changes go to the journal of the old and of the new snapshot, so that
+ * the vault on disk plus its journal always describe the latest state, however a crash interleaves with the save.
+ * The methods have to be called while the repository holds its write lock (see ContractRepository.locked).
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+@Slf4j
+public class JournalRecorder implements ContractListener {
+    public static final String OPERATION = "op";
+    public static final String ADD = "add";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+    public static final String CLEAR = "clear";
+
+    private final ObjectMapper mapper;
+
+    private final ObjectWriter writer;
+
+    private final long compactionThreshold;
+
+    private final Runnable compaction;
+
+    /** vault, whose journal is recorded */
+    private Path vault;
+
+    private ChangeJournal current;
+
+    /** journal of the snapshot, which is being written */
+    private ChangeJournal next;
+
+    /**
+     * @param mapper              mapper to serialize the changes
+     * @param compactionThreshold size of the journal in bytes, from which it should be compacted
+     * @param compaction          starts the compaction (in the background)
+     */
+    public JournalRecorder(ObjectMapper mapper, long compactionThreshold, Runnable compaction) {
+        this.mapper = mapper;
+        this.writer = mapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.compactionThreshold = compactionThreshold;
+        this.compaction = compaction;
+    }
+
+    /**
+     * @return vault, whose journal is recorded, or null
+     */
+    public Path getVault() {
+        return vault;
+    }
+
+    /**
+     * @param vault path of a vault
+     * @return      true, if the changes are currently recorded in the journal of this vault
+     */
+    public boolean isRecording(Path vault) {
+        return current != null && vault.equals(this.vault);
+    }
+
+    /**
+     * checks whether a snapshot written to the given vault continues the recorded journal
+     * @param target path of the vault to be written
+     * @return       true, if no journal is recorded yet or the journal belongs to this vault
+     */
+    public boolean covers(Path target) {
+        return vault == null || vault.equals(target);
+    }
+
+    /**
+     * continues the journal of a loaded vault
+     * @param vault  path of the vault
+     * @param key    key of the vault
+     * @param iv     IV of the loaded snapshot
+     * @param replay result of the replay or null, if there was no journal
+     */
+    public void open(Path vault, SecretKey key, byte[] iv, ChangeJournal.Replay replay) {
+        close();
+        Path path = ChangeJournal.pathOf(vault);
+        try {
+            current = replay != null && replay.complete()
+                    ? ChangeJournal.open(path, key, iv, replay)
+                    : ChangeJournal.create(path, key, iv);
+            this.vault = vault;
+            log.debug("Recording changes to {}", path);
+        } catch (Exception e) {
+            log.error("Failed to open journal {}, changes are only saved with the next export.", path);
+            log.debug(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+        }
+    }
+
+    /**
+     * starts the journal of a new snapshot; until the snapshot is committed, changes are recorded twice
+     * @param target path of the vault to be written
+     * @param key    key of the new snapshot
+     * @param iv     IV of the new snapshot
+     */
+    public void beginSnapshot(Path target, SecretKey key, byte[] iv) {
+        abortSnapshot();
+        try {
+            next = ChangeJournal.create(ChangeJournal.nextPathOf(target), key, iv);
+            if (vault == null) vault = target;
+        } catch (Exception e) {
+            log.error("Failed to create the journal for the new snapshot of {}.", target);
+            log.debug(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+        }
+    }
+
+    /**
+     * replaces the journal with the one of the written snapshot
+     */
+    public void commitSnapshot() {
+        if (next == null) return;
+        try {
+            if (current != null) current.close();
+            next.moveTo(ChangeJournal.pathOf(vault));
+            current = next;
+        } catch (Exception e) {
+            log.error("Failed to replace the journal of {}.", vault);
+            log.debug(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+            current = null;
+        }
+        next = null;
+    }
+
+    /**
+     * discards the journal of a snapshot, which couldn't be written
+     */
+    public void abortSnapshot() {
+        if (next == null) return;
+        try {
+            next.close();
+            Files.deleteIfExists(next.getPath());
+        } catch (Exception e) {
+            log.debug(e.getMessage());
+        }
+        next = null;
+    }
+
+    /**
+     * stops recording
+     */
+    public void close() {
+        abortSnapshot();
+        if (current != null) {
+            try {
+                current.close();
+            } catch (Exception e) {
+                log.debug(e.getMessage());
+            }
+        }
+        current = null;
+        vault = null;
+    }
+
+    @Override
+    public void contractAdded(Contract contract) {
+        ObjectNode change = mapper.createObjectNode().put(OPERATION, ADD);
+        change.set("contract", mapper.valueToTree(contract));
+        record(change);
+    }
+
+    @Override
+    public void contractUpdated(Contract previous, Contract current) {
+        ObjectNode change = mapper.createObjectNode().put(OPERATION, UPDATE);
+        change.set("contract", mapper.valueToTree(current));
+        record(change);
+    }
+
+    @Override
+    public void contractRemoved(Contract contract) {
+        record(mapper.createObjectNode().put(OPERATION, DELETE).put("id", contract.getId()));
+    }
+
+    @Override
+    public void contractsCleared() {
+        record(mapper.createObjectNode().put(OPERATION, CLEAR));
+    }
+
+    private void record(ObjectNode change) {
+        if (current == null && next == null) return;
+
+        byte[] frame = writer.writeValueAsBytes(change);
+        try {
+            if (current != null) current.append(frame);
+            if (next != null) next.append(frame);
+            if (current != null && next == null && current.size() > compactionThreshold) compaction.run();
+        } catch (Exception e) {
+            log.error("Failed to record a change, changes are only saved with the next export.");
+            log.debug(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+            Path recorded = vault;
+            close();
+            // the next snapshot continues the journal of this vault
+            vault = recorded;
+        }
+    }
+}
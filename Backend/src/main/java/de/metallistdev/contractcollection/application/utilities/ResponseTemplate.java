@@ -0,0 +1,118 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.JsonNodeFactory;
+import tools.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * response template, which is compiled once: the placeholders of its head are filled for every reason code in
+ * advance, so that a response only has to add its body
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+@Slf4j
+public class ResponseTemplate {
+    private static final String BASEPATH = "static/templates/responses/";
+
+    private static final String PLACEHOLDER_MESSAGE = "#MESSAGE#";
+    private static final String FIELDNAME_MESSAGE = "message";
+    private static final String PLACEHOLDER_RC = "#REASON-CODE#";
+    private static final String FIELDNAME_RC = "reasonCode";
+
+    public static final String FIELDNAME_HEAD = "head";
+    public static final String FIELDNAME_BODY = "body";
+
+    private final Map<ReasonCodes, ObjectNode> heads = new EnumMap<>(ReasonCodes.class);
+
+    /** body of the template (e.g. an empty object) or null, if the template has none */
+    private final JsonNode body;
+
+    private ResponseTemplate(JsonNode template) {
+        JsonNode head = template.path(FIELDNAME_HEAD);
+        for (ReasonCodes reasonCode : ReasonCodes.values()) heads.put(reasonCode, fillHead(head, reasonCode));
+        this.body = template.get(FIELDNAME_BODY);
+    }
+
+    /**
+     * loads and compiles a template from the classpath; falls back to a plain head, if it can't be read
+     * @param mapper   mapper to parse the template
+     * @param filename name of the template file
+     * @return         compiled template
+     */
+    public static ResponseTemplate compile(ObjectMapper mapper, String filename) {
+        try (InputStream stream = ResponseTemplate.class.getClassLoader().getResourceAsStream(BASEPATH + filename)) {
+            if (stream == null) throw new IllegalStateException("Template " + filename + " not found.");
+            return new ResponseTemplate(mapper.readTree(stream));
+        } catch (Exception exception) {
+            log.error("Failed to compile response template {}.", filename);
+            log.debug(exception.getMessage());
+            log.debug(Arrays.toString(exception.getStackTrace()));
+            return new ResponseTemplate(JsonNodeFactory.instance.objectNode());
+        }
+    }
+
+    /**
+     * fills the placeholders of the template head; a template without head gets the default fields
+     */
+    private static ObjectNode fillHead(JsonNode template, ReasonCodes reasonCode) {
+        ObjectNode head = JsonNodeFactory.instance.objectNode();
+        if (!template.isObject() || template.isEmpty()) {
+            head.put(FIELDNAME_MESSAGE, reasonCode.getDescription());
+            head.put(FIELDNAME_RC, reasonCode.getCodenumber());
+            return head;
+        }
+
+        for (Map.Entry<String, JsonNode> field : template.properties()) {
+            if (field.getValue().isString()) {
+                head.put(field.getKey(), field.getValue().stringValue()
+                        .replace(PLACEHOLDER_MESSAGE, reasonCode.getDescription())
+                        .replace(PLACEHOLDER_RC, reasonCode.getCodenumber()));
+            } else head.set(field.getKey(), field.getValue().deepCopy());
+        }
+        return head;
+    }
+
+    /**
+     * creates a new response with the filled head and the body of the template
+     * @param reasonCode RC which has to be returned
+     * @return           response, which may be modified by the caller
+     */
+    public ObjectNode create(ReasonCodes reasonCode) {
+        ObjectNode root = JsonNodeFactory.instance.objectNode();
+        root.set(FIELDNAME_HEAD, heads.get(reasonCode).deepCopy());
+        if (body != null) root.set(FIELDNAME_BODY, body.deepCopy());
+        return root;
+    }
+
+    /**
+     * creates a new response with the filled head and the given body
+     * @param reasonCode RC which has to be returned
+     * @param body       content of the body
+     * @return           response, which may be modified by the caller
+     */
+    public ObjectNode create(ReasonCodes reasonCode, JsonNode body) {
+        ObjectNode root = JsonNodeFactory.instance.objectNode();
+        root.set(FIELDNAME_HEAD, heads.get(reasonCode).deepCopy());
+        root.set(FIELDNAME_BODY, body);
+        return root;
+    }
+
+    /**
+     * writes the filled head as property of the current object, so that the body can be streamed behind it
+     * @param generator  generator positioned inside the response object
+     * @param reasonCode RC which has to be returned
+     */
+    public void writeHead(JsonGenerator generator, ReasonCodes reasonCode) {
+        generator.writeName(FIELDNAME_HEAD);
+        generator.writeTree(heads.get(reasonCode));
+    }
+}
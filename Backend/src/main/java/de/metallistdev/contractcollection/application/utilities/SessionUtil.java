@@ -1,49 +1,177 @@
 package de.metallistdev.contractcollection.application.utilities;
 
 import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.DeserializationFeature;
 import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.MappingIterator;
 import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.ObjectWriter;
 import tools.jackson.databind.SerializationFeature;
 import tools.jackson.databind.json.JsonMapper;
-import tools.jackson.databind.node.ArrayNode;
 import tools.jackson.databind.node.JsonNodeType;
 import de.metallistdev.contractcollection.commons.Contract;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
-import java.io.File;
-import java.io.FileWriter;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
 
 @Slf4j
 @Component
 public class SessionUtil {
 
+    private static final Set<String> UPDATABLE_ATTRIBUTES = Set.of("category", "name", "expenses", "cycle",
+            "customerNr", "contractNr", "contractPeriod", "periodOfNotice", "startDate", "description", "documentPath");
+
+    private final ContractRepository contracts;
+
+    private final ContractIndex categoryIndex = new ContractIndex(Contract::getCategory);
+    private final ContractIndex contractNrIndex = new ContractIndex(Contract::getContractNr);
+    private final ContractIndex customerNrIndex = new ContractIndex(Contract::getCustomerNr);
+
+    @Getter
+    private final ExpenseStatistics statistics = new ExpenseStatistics();
+
     @Getter
-    private ArrayList<Contract> contracts;
+    private final DeadlineEngine deadlines = new DeadlineEngine();
+
+    /** column-wise copy of the numeric attributes, built on demand for analytics */
+    private volatile ContractColumns columns = ContractColumns.EMPTY;
 
     private final Preferences preferences;
 
-    private String password;
+    private volatile String password;
+
+    /** key derived at the last unlock or save; reused as long as the password doesn't change */
+    private volatile VaultKey vaultKey;
 
     private final ObjectMapper mapper = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
 
+    private final ObjectWriter compactWriter = mapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+
+    /** writes into streams, which are closed by the caller */
+    private final ObjectWriter streamWriter = compactWriter.without(StreamWriteFeature.AUTO_CLOSE_TARGET);
+
+    private final ObjectReader contractReader = mapper.readerFor(Contract.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    /** number of records after which the progress of a streamed import or export is logged */
+    private static final int PROGRESS_INTERVAL = 10_000;
+
+    /** records changes next to the loaded vault; null if journaling is disabled */
+    private final JournalRecorder journal;
+
+    /** the only thread, which writes vaults: saves, autosaves and compacted snapshots are queued here */
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vault-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+
+    /** saves changes to the loaded vault in the background; null if autosave is disabled */
+    private final AutoSaver autoSaver;
+
+    /** vault, which got loaded last; target of the autosave */
+    private volatile Path vaultPath;
+
     public SessionUtil() {
-        this.contracts = new ArrayList<>();
+        this(false);
+    }
+
+    /**
+     * creates a session without change journal
+     * @param reuseFreedIds whether ids of deleted contracts are handed out again
+     */
+    public SessionUtil(boolean reuseFreedIds) {
+        this(reuseFreedIds, false, 0);
+    }
+
+    /**
+     * creates a session without autosave
+     * @param reuseFreedIds       whether ids of deleted contracts are handed out again
+     * @param journalEnabled      whether changes are recorded in a journal next to the loaded vault
+     * @param compactionThreshold size of the journal in bytes, from which it is folded into a new snapshot
+     */
+    public SessionUtil(boolean reuseFreedIds, boolean journalEnabled, long compactionThreshold) {
+        this(reuseFreedIds, journalEnabled, compactionThreshold, false, Duration.ZERO, Duration.ZERO,
+                ChangeLog.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param reuseFreedIds       whether ids of deleted contracts are handed out again
+     * @param journalEnabled      whether changes are recorded in a journal next to the loaded vault
+     * @param compactionThreshold size of the journal in bytes, from which it is folded into a new snapshot
+     * @param autosaveEnabled     whether changes are saved to the loaded vault in the background; while a journal is
+     *                            recorded, changes are on disk already and the vault is only rewritten by compaction
+     * @param autosaveDebounce    time without changes, after which the vault gets saved
+     * @param autosaveMaxLatency  maximum time between a change and the save
+     * @param changeLogCapacity   number of the latest changes, which clients can catch up on (see getChanges)
+     */
+    @Autowired
+    public SessionUtil(@Value("${contractcollection.ids.reuse-freed:false}") boolean reuseFreedIds,
+                       @Value("${contractcollection.journal.enabled:true}") boolean journalEnabled,
+                       @Value("${contractcollection.journal.compaction-threshold:1048576}") long compactionThreshold,
+                       @Value("${contractcollection.autosave.enabled:true}") boolean autosaveEnabled,
+                       @Value("${contractcollection.autosave.debounce:2s}") Duration autosaveDebounce,
+                       @Value("${contractcollection.autosave.max-latency:30s}") Duration autosaveMaxLatency,
+                       @Value("${contractcollection.changes.capacity:4096}") int changeLogCapacity) {
+        this.contracts = new ContractRepository(reuseFreedIds, changeLogCapacity);
+        this.contracts.addListener(categoryIndex);
+        this.contracts.addListener(contractNrIndex);
+        this.contracts.addListener(customerNrIndex);
+        this.contracts.addListener(statistics);
+        this.contracts.addListener(deadlines);
+        this.journal = journalEnabled
+                ? new JournalRecorder(mapper, compactionThreshold, this::scheduleCompaction)
+                : null;
+        if (journal != null) this.contracts.addListener(journal);
+        this.autoSaver = autosaveEnabled
+                ? new AutoSaver(writer, autosaveDebounce, autosaveMaxLatency, contracts::getVersion, this::autosave)
+                : null;
+        if (autoSaver != null) this.contracts.addListener(autoSaver);
         this.password = "";
         this.preferences = Preferences.userNodeForPackage(SessionUtil.class);
     }
@@ -55,14 +183,119 @@ public class SessionUtil {
      * @return             object of the contract
      */
     public Contract getSingleContract(int id) {
-        for (Contract c : contracts) {
-            if (c.getId() == id) return c;
+        return contracts.get(id);
+    }
+
+    /**
+     * registers a listener, which gets notified about every change of the contracts (see ContractRepository)
+     * @param listener listener to be registered; it is notified about the current contracts as additions first
+     */
+    public void addListener(ContractListener listener) {
+        contracts.addListener(listener);
+    }
+
+    /**
+     * @return version of the contracts; it changes with every change of any contract
+     */
+    public long getVersion() {
+        return contracts.getVersion();
+    }
+
+    /**
+     * @param id ID of the contract (primary key)
+     * @return   version of the contract or 0, if it doesn't exist; it changes with every change of the contract
+     */
+    public long getVersion(int id) {
+        return contracts.getVersion(id);
+    }
+
+    /**
+     * collects the changes of the contracts since a version, which the client knows
+     * @param since version of the contracts, which the client knows
+     * @return      changed contracts and ids of the removed ones, or all contracts, if the changes since this version
+     *              are not known anymore
+     */
+    public ContractChanges getChanges(long since) {
+        ChangeLog.Delta delta = contracts.changesSince(since);
+        if (delta == null) {
+            // the version is read before the contracts, so the snapshot is at least as new as it claims
+            long version = contracts.getVersion();
+            return new ContractChanges(version, true, contracts.values(), List.of());
         }
-        return null;
+
+        List<Contract> changed = new ArrayList<>(delta.changed().length);
+        List<Integer> removed = new ArrayList<>(delta.removed().length);
+        for (int id : delta.changed()) {
+            Contract contract = contracts.get(id);
+            // removed after the delta was taken; the next delta reports it again
+            if (contract != null) changed.add(contract);
+            else removed.add(id);
+        }
+        for (int id : delta.removed()) removed.add(id);
+        return new ContractChanges(delta.version(), false, changed, removed);
+    }
+
+    /**
+     * lists all contracts of the session
+     * @return immutable snapshot of all contracts ordered by id
+     */
+    public List<Contract> getContracts() {
+        return contracts.values();
+    }
+
+    /**
+     * lists a page of contracts of the session
+     * @param afterId cursor: id of the last contract of the previous page or 0 for the first page
+     * @param limit   maximum number of contracts
+     * @return        contracts ordered by id
+     */
+    public List<Contract> getContracts(int afterId, int limit) {
+        return contracts.page(afterId, limit);
+    }
+
+    /**
+     * returns the numeric attributes of all contracts as columns; they are only copied again after a change
+     * @return columns ordered by id
+     */
+    public ContractColumns getColumns() {
+        ContractColumns current = columns;
+        long version = contracts.getVersion();
+        if (current.getVersion() == version) return current;
+
+        current = ContractColumns.of(version, contracts.values());
+        columns = current;
+        return current;
+    }
+
+    /**
+     * finds all contracts of a category
+     * @param category exact name of the category
+     * @return         matching contracts ordered by id
+     */
+    public List<Contract> getContractsByCategory(String category) {
+        return categoryIndex.lookup(category);
+    }
+
+    /**
+     * finds all contracts with a contract number
+     * @param contractNr exact contract number
+     * @return           matching contracts ordered by id
+     */
+    public List<Contract> getContractsByContractNr(String contractNr) {
+        return contractNrIndex.lookup(contractNr);
+    }
+
+    /**
+     * finds all contracts with a customer number
+     * @param customerNr exact customer number
+     * @return           matching contracts ordered by id
+     */
+    public List<Contract> getContractsByCustomerNr(String customerNr) {
+        return customerNrIndex.lookup(customerNr);
     }
 
     /**
-     * adds a contract to the recent session
+     * adds a contract to the recent session; a contract without id (or with a taken id) gets a new one
      * @param contract      the contract to be added
      * @return              boolean whether successful or not
      */
@@ -85,10 +318,7 @@ public class SessionUtil {
      * @return             boolean, which informs about success/failure
      */
     public boolean removeContract(int id) {
-        for (Contract c : contracts) {
-            if (c.getId() == id) return removeContract(c);
-        }
-        return false;
+        return contracts.remove(id) != null;
     }
 
     /**
@@ -97,7 +327,25 @@ public class SessionUtil {
      * basically only used with overwriting-import
      */
     public void removeAllContracts() {
-        contracts = new ArrayList<>();
+        contracts.clear();
+    }
+
+    /**
+     * clears the list of contracts before an overwriting import of a vault
+     * <p>
+     * the session is detached from the loaded vault first, so the clear doesn't end up in its journal: replayed on
+     * top of the snapshot, it would remove all contracts of the vault the next time it gets loaded. Neither does the
+     * autosave write the empty session over the vault, in case the import fails; it targets the imported vault once
+     * it got loaded. Synchronized with the saves, so an autosave in progress finishes first.
+     */
+    public synchronized void clearForImport() {
+        contracts.locked(() -> {
+            if (journal != null) journal.close();
+            this.vaultPath = null;
+            contracts.clear();
+            return null;
+        });
+        if (autoSaver != null) autoSaver.cancel();
     }
 
     /**
@@ -106,36 +354,285 @@ public class SessionUtil {
      * @param key   name of the attribute, which is supposed to be changed
      * @param value new value
      * @return      object of the contract or null
+     * @throws IllegalArgumentException if the value can't be parsed or breaks the rules of a contract
      */
     public Contract updateContract(int id, String key, String value) {
-        Contract newContract = this.getSingleContract(id);
+        if (!UPDATABLE_ATTRIBUTES.contains(key)) return null;
+
+        // the change is applied to a copy, so readers never see a half-updated contract
+        return contracts.update(id, newContract -> setAttribute(newContract, key, value));
+    }
 
+    /**
+     * sets a single attribute of a contract from its text value; the values are checked like the ones of a patch
+     * @throws IllegalArgumentException if the attribute is unknown or the value can't be parsed or is out of range
+     */
+    private static void setAttribute(Contract contract, String key, String value) {
         switch (key) {
-            case "category"         -> newContract.setCategory(value);
-            case "name"             -> newContract.setName(value);
-            case "expenses"         -> newContract.setExpenses(Float.parseFloat(value));
-            case "cycle"            -> newContract.setCycle(Integer.parseInt(value));
-            case "customerNr"       -> newContract.setCustomerNr(value);
-            case "contractNr"       -> newContract.setContractNr(value);
-            case "contractPeriod"   -> newContract.setContractPeriod(Integer.parseInt(value));
-            case "periodOfNotice"   -> newContract.setPeriodOfNotice(Integer.parseInt(value));
-            case "startDate"        -> newContract.setStartDate(value);
-            case "description"      -> newContract.setDescription(value);
-            case "documentPath"     -> newContract.setDocumentPath(value);
-            default                 -> { return null; }
+            case "category"         -> contract.setCategory(value);
+            case "name"             -> contract.setName(value);
+            case "expenses"         -> contract.setExpenses(number(key, value));
+            case "cycle"            -> contract.setCycle(integer(key, value, 1));
+            case "customerNr"       -> contract.setCustomerNr(value);
+            case "contractNr"       -> contract.setContractNr(value);
+            case "contractPeriod"   -> contract.setContractPeriod(integer(key, value, 0));
+            case "periodOfNotice"   -> contract.setPeriodOfNotice(integer(key, value, 0));
+            case "startDate"        -> contract.setStartDate(value);
+            case "description"      -> contract.setDescription(value);
+            case "documentPath"     -> contract.setDocumentPath(value);
+            default                 -> throw new IllegalArgumentException("Unknown attribute " + key);
+        }
+    }
+
+    /**
+     * changes any number of attributes of the contract at once (JSON merge patch, RFC 7396)
+     * <p>
+     * the whole patch is parsed before the contract is touched and then applied in a single update, so either all
+     * attributes are changed or none and readers never see a half-patched contract.
+     * A null value removes an optional text attribute.
+     * @param id    id of the contract to be changed
+     * @param patch object with the new values of the attributes
+     * @return      object of the contract or null, if it doesn't exist
+     * @throws IllegalArgumentException if the patch contains an unknown attribute or a value of the wrong type
+     */
+    public Contract patchContract(int id, JsonNode patch) {
+        if (patch == null || !patch.isObject()) throw new IllegalArgumentException("Patch is not an object");
+
+        List<Consumer<Contract>> changes = new ArrayList<>(patch.size());
+        for (Map.Entry<String, JsonNode> attribute : patch.properties()) {
+            String key = attribute.getKey();
+            JsonNode value = attribute.getValue();
+            if (key.equals("id")) {
+                if (!value.canConvertToInt() || value.intValue() != id)
+                    throw new IllegalArgumentException("The id of a contract can't be changed");
+                continue;
+            }
+            // values are parsed here, so a wrongly typed one rejects the patch before the contract is touched
+            changes.add(switch (key) {
+                case "category" -> {
+                    String category = requiredText(key, value);
+                    yield contract -> contract.setCategory(category);
+                }
+                case "name" -> {
+                    String name = requiredText(key, value);
+                    yield contract -> contract.setName(name);
+                }
+                case "expenses" -> {
+                    float expenses = number(key, value);
+                    yield contract -> contract.setExpenses(expenses);
+                }
+                case "cycle" -> {
+                    int cycle = integer(key, value, 1);
+                    yield contract -> contract.setCycle(cycle);
+                }
+                case "customerNr" -> {
+                    String customerNr = text(key, value);
+                    yield contract -> contract.setCustomerNr(customerNr);
+                }
+                case "contractNr" -> {
+                    String contractNr = text(key, value);
+                    yield contract -> contract.setContractNr(contractNr);
+                }
+                case "contractPeriod" -> {
+                    int contractPeriod = integer(key, value, 0);
+                    yield contract -> contract.setContractPeriod(contractPeriod);
+                }
+                case "periodOfNotice" -> {
+                    int periodOfNotice = integer(key, value, 0);
+                    yield contract -> contract.setPeriodOfNotice(periodOfNotice);
+                }
+                case "startDate" -> {
+                    String startDate = text(key, value);
+                    yield contract -> contract.setStartDate(startDate);
+                }
+                case "description" -> {
+                    String description = text(key, value);
+                    yield contract -> contract.setDescription(description);
+                }
+                case "documentPath" -> {
+                    String documentPath = text(key, value);
+                    yield contract -> contract.setDocumentPath(documentPath);
+                }
+                default -> throw new IllegalArgumentException("Unknown attribute " + key);
+            });
+        }
+
+        return contracts.update(id, contract -> changes.forEach(change -> change.accept(contract)));
+    }
+
+    private static String text(String key, JsonNode value) {
+        if (value.isNull()) return null;
+        if (!value.isString()) throw new IllegalArgumentException(key + " has to be a text");
+        return value.stringValue();
+    }
+
+    private static String requiredText(String key, JsonNode value) {
+        if (value.isNull()) throw new IllegalArgumentException(key + " can't be removed");
+        return text(key, value);
+    }
+
+    private static float number(String key, JsonNode value) {
+        if (!value.isNumber() || !Float.isFinite(value.floatValue()))
+            throw new IllegalArgumentException(key + " has to be a number");
+        return value.floatValue();
+    }
+
+    private static int integer(String key, JsonNode value, int minimum) {
+        if (!value.isIntegralNumber() || !value.canConvertToInt() || value.intValue() < minimum)
+            throw new IllegalArgumentException(key + " has to be an integer of at least " + minimum);
+        return value.intValue();
+    }
+
+    private static float number(String key, String value) {
+        float number = Float.parseFloat(value);
+        if (!Float.isFinite(number)) throw new IllegalArgumentException(key + " has to be a number");
+        return number;
+    }
+
+    private static int integer(String key, String value, int minimum) {
+        int number = Integer.parseInt(value);
+        if (number < minimum) throw new IllegalArgumentException(key + " has to be an integer of at least " + minimum);
+        return number;
+    }
+
+    /**
+     * applies many operations as one: no other change interleaves and if one of them fails, none is applied
+     * <p>
+     * every operation is checked against the state, which the ones before it would leave, before the first one is
+     * applied; a failing batch therefore doesn't change the store, its version, the journal or the id sequence
+     * @param operations operations in the order they are applied
+     * @return           results of the operations up to the first failure; the batch was applied, if all succeeded
+     */
+    public List<BatchOperation.Result> applyBatch(List<BatchOperation> operations) {
+        return contracts.locked(() -> {
+            List<BatchOperation.Result> results = new ArrayList<>(operations.size());
+            // state of the contracts touched by the batch; null marks a removed one
+            Map<Integer, Contract> staged = new HashMap<>();
+
+            for (BatchOperation operation : operations) {
+                BatchOperation.Result result = this.stage(operation, staged);
+                results.add(result);
+                if (!result.isSuccess()) {
+                    log.info("Operation {} of the batch failed, the batch is not applied.", results.size());
+                    return results;
+                }
+            }
+
+            // only valid operations are left, which can't fail anymore
+            for (BatchOperation.Result result : results) {
+                switch (result.operation().type()) {
+                    case ADD    -> contracts.add(result.contract());
+                    case UPDATE -> contracts.replace(result.contract());
+                    case DELETE -> contracts.remove(result.operation().id());
+                    default     -> throw new IllegalStateException("Unexpected operation " + result.operation());
+                }
+            }
+            log.info("Applied a batch of {} operations.", results.size());
+            return results;
+        });
+    }
+
+    /**
+     * checks a single operation of a batch and records its outcome without touching the store
+     * @param operation operation to check
+     * @param staged    state of the contracts changed by the operations before
+     * @return          result of the operation; an added contract gets its id, once the batch is applied
+     */
+    private BatchOperation.Result stage(BatchOperation operation, Map<Integer, Contract> staged) {
+        switch (operation.type()) {
+            case ADD -> {
+                Contract contract = operation.contract();
+                if (contract == null) return new BatchOperation.Result(operation, ReasonCodes.RC_CREATE_ERROR, null);
+                // a free id is kept, so later operations of the batch may refer to it
+                if (contract.getId() > 0 && staged(contract.getId(), staged) == null)
+                    staged.put(contract.getId(), contract);
+                return new BatchOperation.Result(operation, ReasonCodes.RC_CREATE_SUCCESS, contract);
+            }
+            case UPDATE -> {
+                Contract current = staged(operation.id(), staged);
+                if (current == null || !UPDATABLE_ATTRIBUTES.contains(operation.key()))
+                    return new BatchOperation.Result(operation, ReasonCodes.RC_UPDATE_ERROR, null);
+
+                Contract updated = new Contract(current);
+                try {
+                    setAttribute(updated, operation.key(), operation.value());
+                } catch (RuntimeException e) {
+                    log.debug(e.getMessage());
+                    return new BatchOperation.Result(operation, ReasonCodes.RC_UPDATE_ERROR, null);
+                }
+                updated.setId(operation.id());
+                staged.put(operation.id(), updated);
+                return new BatchOperation.Result(operation, ReasonCodes.RC_UPDATE_SUCCESS, updated);
+            }
+            case DELETE -> {
+                if (staged(operation.id(), staged) == null)
+                    return new BatchOperation.Result(operation, ReasonCodes.RC_DELETE_MISSING, null);
+                staged.put(operation.id(), null);
+                return new BatchOperation.Result(operation, ReasonCodes.RC_DELETE_SUCCESS, null);
+            }
+            default -> {
+                return new BatchOperation.Result(operation, ReasonCodes.RC_GENERAL_ERROR, null);
+            }
         }
-        return newContract;
+    }
+
+    /**
+     * @return the contract as the staged operations leave it or null, if it doesn't exist (anymore)
+     */
+    private Contract staged(int id, Map<Integer, Contract> staged) {
+        return staged.containsKey(id) ? staged.get(id) : contracts.get(id);
     }
 
     /**
      * imports a list of contracts to th current session
+     * <p>
+     * the elements are parsed and checked in parallel; the contracts are then inserted in one bulk operation, which
+     * keeps their order and assigns the ids. Contracts, which break the rules of new contracts, are kept and only
+     * reported: a vault has to load everything it was saved with
      * @param importJson    json, which contains a list of contracts
      * @return              all imported contracts
      */
-    private ArrayList<Contract> importContracts(JsonNode importJson) {
+    private List<Contract> importContracts(JsonNode importJson) {
+        return this.importContracts(importJson, contracts);
+    }
+
+    /**
+     * imports a list of contracts into the given repository (see importContracts)
+     * @param importJson json, which contains a list of contracts
+     * @param target     repository to insert the contracts into
+     * @return           all contracts of the session
+     */
+    private List<Contract> importContracts(JsonNode importJson, ContractRepository target) {
         if (importJson.getNodeType() != JsonNodeType.ARRAY) return new ArrayList<>();
+        long start = System.nanoTime();
+
+        List<JsonNode> elements = new ArrayList<>(importJson.size());
+        importJson.forEach(elements::add);
+
+        // parse and check; the stream keeps the order of the elements
+        List<Contract> parsed = elements.parallelStream()
+                .map(SessionUtil::parseContract)
+                .toList();
+        List<Contract> readable = parsed.stream().filter(Objects::nonNull).toList();
+        long invalid = readable.parallelStream().filter(contract -> !isValid(contract)).count();
 
-        for (JsonNode contractJson : importJson) {
+        int imported = target.addAll(readable);
+        int unreadable = parsed.size() - readable.size();
+        if (unreadable > 0) log.warn("Skipped {} contracts with missing or mistyped attributes.", unreadable);
+        if (invalid > 0) log.warn("Imported {} contracts, which break the rules of new contracts.", invalid);
+        log.info("Imported {} of {} contracts in {} ms.", imported, parsed.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        return this.getContracts();
+    }
+
+    /**
+     * reads a contract of an imported list
+     * @param contractJson json of a single contract
+     * @return             the contract or null, if attributes are missing or of the wrong type
+     */
+    private static Contract parseContract(JsonNode contractJson) {
+        try {
             Contract contract = new Contract();
 
             contract.setCategory(contractJson.get("category").stringValue());
@@ -150,31 +647,85 @@ public class SessionUtil {
             contract.setDescription(contractJson.get("description").stringValue());
             contract.setDocumentPath(contractJson.get("documentPath").stringValue());
 
-            int maxID = 1;
-            for (Contract v : this.getContracts()) {
-                if (v.getId() == maxID) maxID++;
-            }
-
-            contract.setId(maxID);
-            if (this.addContract(contract)) log.info("contract added");
-            else {
-                log.error("Failed to add contract.");
-                log.debug(String.valueOf(contract));
-            }
+            // keeps the stored id, unless it is missing or already taken
+            contract.setId(contractJson.path("id").asInt(0));
+            return contract;
+        } catch (RuntimeException e) {
+            log.debug("Invalid contract: {}", contractJson);
+            return null;
         }
+    }
 
-        return this.getContracts();
+    /**
+     * checks the rules, which apply to added and changed contracts
+     * @param contract parsed contract
+     * @return         true, if it follows them
+     */
+    private static boolean isValid(Contract contract) {
+        boolean valid = contract.getName() != null && contract.getCategory() != null
+                && Float.isFinite(contract.getExpenses()) && contract.getCycle() >= 1;
+        if (!valid) log.debug("Invalid contract: {}", contract);
+        return valid;
     }
 
     /**
-     * puts the list of contracts into a json
-     * @return  string of JSON
+     * imports newline-delimited JSON, one contract per line; the contracts are parsed and added one at a time
+     * @param input stream of contracts
+     * @return      number of imported contracts
      */
-    private String contractsToString() {
-        ArrayNode arrayNode = mapper.valueToTree(contracts);
-        return arrayNode.toString();
+    public long importNdjson(InputStream input) {
+        log.info("Import contracts from NDJSON.");
+        long records = 0;
+        long imported = 0;
+
+        try (MappingIterator<Contract> iterator = contractReader.readValues(input)) {
+            while (iterator.hasNextValue()) {
+                Contract contract = iterator.nextValue();
+                // keeps the given id, unless it is missing or already taken
+                if (this.addContract(contract)) imported++;
+                else {
+                    log.error("Failed to add contract.");
+                    log.debug(String.valueOf(contract));
+                }
+                if (++records % PROGRESS_INTERVAL == 0) log.info("{} contracts read, {} imported", records, imported);
+            }
+        } catch (JacksonException e) {
+            log.error("Couldn't read data after {} contracts.", records);
+            log.debug(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+            throw new IllegalArgumentException("Failed to read data.");
+        }
+        log.info("Imported {} contracts from NDJSON.", imported);
+        return imported;
     }
 
+    /**
+     * exports all contracts as newline-delimited JSON, one contract per line
+     * @param output target of the export; stays open
+     * @return       number of exported contracts
+     */
+    public long exportNdjson(OutputStream output) {
+        log.info("Export contracts as NDJSON.");
+        long exported = 0;
+
+        try (JsonGenerator generator = streamWriter.createGenerator(output)) {
+            for (Contract contract : contracts) {
+                generator.writePOJO(contract);
+                generator.writeRaw('\n');
+                if (++exported % PROGRESS_INTERVAL == 0) {
+                    generator.flush();
+                    log.info("{} contracts exported", exported);
+                }
+            }
+        } catch (JacksonException e) {
+            log.error("Error while writing contracts after {} contracts.", exported);
+            log.debug(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+            throw new IllegalStateException("Error while writing contracts.");
+        }
+        log.info("Exported {} contracts as NDJSON.", exported);
+        return exported;
+    }
 
     /**
      * unlocks and loads the file
@@ -184,33 +735,42 @@ public class SessionUtil {
     public List<Contract> loadFile(String filepath, String password) {
         log.info("Try to unlock and load file: {}", filepath);
 
-        String fileContent;
-        byte[] cipherdata;
+        FileChannel channel = null;
+        VaultFile vault;
+        VaultKey unlockedKey;
 
-        // read file content
+        // read file header; the chunks are read while they are decrypted
         try {
-            fileContent = Files.readString(Paths.get(filepath));
+            channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ);
+            vault = VaultFile.read(channel);
         } catch (Exception e) {
+            closeQuietly(channel);
             log.error("Failed to load file from {}", filepath);
             log.debug(e.getMessage());
             log.debug(Arrays.toString(e.getStackTrace()));
             throw new IllegalArgumentException("Failed to load file.");
         }
-
-        String[] bytevals = fileContent.substring(1, fileContent.length() - 1).split(",");
-        byte[] data = new byte[bytevals.length];
-        for (int i = 0; i < data.length; i++) {
-            data[i] = Byte.parseByte(bytevals[i].trim());
-        }
-        cipherdata = data;
-        log.debug("content load: {}", Arrays.toString(cipherdata));
+        log.debug("vault format version: {}", vault.getVersion());
+        if (vault.isOutdated()) log.info("File {} uses an outdated format and gets migrated on the next save.", filepath);
 
         // decrypt content
-        String decryptedData;
         JsonNode json;
         try {
-            decryptedData = EncryptionUtil.decrypt(cipherdata, password);
-            json = mapper.readTree(decryptedData);
+            SecretKey secretKey = EncryptionUtil.generateKeyFromPassword(
+                    password, vault.getSalt(), vault.getIterations(), vault.getKeySize());
+            if (vault.isChunked()) {
+                try (InputStream plaintext = EncryptionUtil.newChunkedDecryptingStream(channel,
+                        vault.getChunksPosition(), vault.getChunksLength(), secretKey, vault.getIv(),
+                        vault.getChunkSize(), vault.getChunkCount())) {
+                    json = mapper.readTree(plaintext);
+                } catch (JacksonException e) {
+                    // a chunk failing its authentication reaches the parser as a read error
+                    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+                        if (cause instanceof GeneralSecurityException security) throw security;
+                    throw e;
+                }
+            } else json = mapper.readTree(EncryptionUtil.decrypt(vault.getCiphertext(), secretKey, vault.getIv()));
+            unlockedKey = new VaultKey(password, vault.getSalt(), vault.getIterations(), vault.getKeySize(), secretKey);
         } catch (JacksonException e) {
             log.error("Couldn't read data.");
             log.debug(e.getMessage());
@@ -234,12 +794,207 @@ public class SessionUtil {
             if (e.getMessage().contains("IV length"))
                 throw new IllegalStateException("decryption failed");
             else throw new IllegalStateException("Something undefined went wrong whilst decryption.");
+        } finally {
+            closeQuietly(channel);
         }
         log.debug(json.toPrettyString());
-        contracts = this.importContracts(json);
+
+        // changes made since the snapshot are only valid on top of it, so recording stops until they are replayed
+        boolean intact = contracts.locked(() -> {
+            if (journal != null) journal.close();
+            return contracts.size() == 0;
+        });
+        List<Contract> result;
+        if (journal != null && !intact) {
+            // the journal only applies to the snapshot, so both are put together apart from the session and merged
+            ContractRepository loaded = new ContractRepository(false, 1);
+            this.importContracts(json, loaded);
+            this.replayJournal(loaded, Paths.get(filepath), unlockedKey.getSecretKey(), vault.getIv());
+            contracts.addAll(loaded.values());
+            result = this.getContracts();
+        } else result = this.importContracts(json);
         preferences.put("Filepath", filepath);
         this.password = password;
-        return contracts;
+        this.vaultKey = unlockedKey;
+        if (journal != null && intact) {
+            this.replayJournal(Paths.get(filepath), unlockedKey.getSecretKey(), vault.getIv());
+            result = this.getContracts();
+        }
+        this.vaultPath = Paths.get(filepath);
+        // the loaded state is on disk (including a replayed journal), unless it got merged into other contracts
+        if (autoSaver != null && intact) autoSaver.markSaved(contracts.getVersion());
+        return result;
+    }
+
+    /**
+     * saves the session to the loaded vault
+     * <p>
+     * while the journal of the vault is recorded, every change is on disk already, so the vault isn't rewritten:
+     * that only happens, once the journal exceeds the compaction threshold. Without journal (disabled or failed),
+     * the whole vault is written.
+     * @return false, if no vault has been loaded
+     */
+    private synchronized boolean autosave() {
+        Path vault = vaultPath;
+        if (vault == null) return false;
+
+        // the version is read together with the state of the journal, which recorded every change up to it
+        long version = contracts.locked(() ->
+                journal != null && journal.isRecording(vault) ? contracts.getVersion() : -1);
+        if (version >= 0) {
+            autoSaver.markSaved(version);
+            return true;
+        }
+        return this.writeFile(vault.toString(), this.password);
+    }
+
+    /**
+     * @return true, if the session contains changes, which haven't been autosaved yet
+     */
+    public boolean isDirty() {
+        return autoSaver != null && autoSaver.isDirty();
+    }
+
+    /**
+     * applies the changes recorded since the snapshot was written and continues the journal
+     * @param vault path of the loaded vault
+     * @param key   key of the vault
+     * @param iv    IV of the loaded snapshot
+     */
+    private void replayJournal(Path vault, SecretKey key, byte[] iv) {
+        boolean compact = contracts.locked(() -> {
+            Path path = ChangeJournal.pathOf(vault);
+            Path nextPath = ChangeJournal.nextPathOf(vault);
+            Path replayed = nextPath;
+            ChangeJournal.Replay replay;
+            try {
+                // a journal of the loaded snapshot, which wasn't renamed yet, continues the vault
+                replay = ChangeJournal.replay(nextPath, key, iv, frame -> this.applyChange(contracts, frame));
+                if (replay != null) Files.move(nextPath, path, StandardCopyOption.REPLACE_EXISTING);
+                else {
+                    Files.deleteIfExists(nextPath);
+                    replayed = path;
+                    replay = ChangeJournal.replay(path, key, iv, frame -> this.applyChange(contracts, frame));
+                }
+            } catch (Exception e) {
+                log.error("Failed to replay journal {}.", replayed);
+                log.debug(e.getMessage());
+                log.debug(Arrays.toString(e.getStackTrace()));
+                // the next snapshot would replace the journal, so it is kept apart
+                this.setAside(replayed, vault);
+                return false;
+            }
+            if (replay != null) log.info("Replayed {} changes from journal {}.", replay.frames(), path);
+            if (replay != null && !replay.complete()) this.setAside(path, vault);
+
+            journal.open(vault, key, iv, replay);
+            // the valid part of a damaged journal only lives in memory now
+            return replay != null && !replay.complete();
+        });
+        if (compact) this.scheduleCompaction();
+    }
+
+    /**
+     * applies the changes recorded since the snapshot was written to contracts loaded apart from the session; the
+     * journal is only read, it gets replaced once the merged contracts are saved to the vault
+     * @param target contracts of the loaded snapshot
+     * @param vault  path of the loaded vault
+     * @param key    key of the vault
+     * @param iv     IV of the loaded snapshot
+     */
+    private void replayJournal(ContractRepository target, Path vault, SecretKey key, byte[] iv) {
+        Path replayed = ChangeJournal.nextPathOf(vault);
+        try {
+            ChangeJournal.Replay replay = ChangeJournal.replay(replayed, key, iv, frame -> this.applyChange(target, frame));
+            if (replay == null) {
+                replayed = ChangeJournal.pathOf(vault);
+                replay = ChangeJournal.replay(replayed, key, iv, frame -> this.applyChange(target, frame));
+            }
+            if (replay != null) log.info("Replayed {} changes from journal {}.", replay.frames(), replayed);
+            if (replay != null && !replay.complete()) this.setAside(replayed, vault);
+        } catch (Exception e) {
+            log.error("Failed to replay journal {}.", replayed);
+            log.debug(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+            this.setAside(replayed, vault);
+        }
+    }
+
+    /**
+     * moves a journal, which couldn't be replayed completely, out of the way of the next snapshot
+     * @param path  path of the journal
+     * @param vault path of the vault, the journal belongs to
+     */
+    private void setAside(Path path, Path vault) {
+        Path kept = ChangeJournal.unreplayedPathOf(vault);
+        if (Files.exists(kept)) kept = kept.resolveSibling(kept.getFileName() + "." + System.currentTimeMillis());
+        try {
+            Files.move(path, kept);
+            log.warn("Journal {} wasn't replayed completely, it is kept as {}.", path, kept);
+        } catch (IOException e) {
+            log.error("Failed to keep journal {} apart, it gets replaced by the next save.", path);
+            log.debug(e.getMessage());
+            log.debug(Arrays.toString(e.getStackTrace()));
+        }
+    }
+
+    /**
+     * applies a change read from the journal
+     * @param target contracts to apply the change to
+     * @param frame  serialized change
+     */
+    private void applyChange(ContractRepository target, byte[] frame) {
+        JsonNode change = mapper.readTree(frame);
+        switch (change.path(JournalRecorder.OPERATION).asString()) {
+            case JournalRecorder.ADD, JournalRecorder.UPDATE -> {
+                Contract contract = contractReader.readValue(change.get("contract"));
+                if (target.replace(contract) == null) target.add(contract);
+            }
+            case JournalRecorder.DELETE -> target.remove(change.path("id").asInt());
+            case JournalRecorder.CLEAR  -> target.clear();
+            default -> log.warn("Unknown change in journal: {}", change);
+        }
+    }
+
+    /**
+     * writes a new snapshot of the loaded vault in the background, which starts an empty journal
+     */
+    private void scheduleCompaction() {
+        if (!compactionPending.compareAndSet(false, true)) return;
+
+        try {
+            writer.execute(() -> {
+                try {
+                    Path vault = contracts.locked(journal::getVault);
+                    if (vault != null) {
+                        log.info("Compacting the journal of {}.", vault);
+                        this.writeFile(vault.toString(), this.password);
+                    }
+                } catch (Exception e) {
+                    log.error("Failed to compact the journal.");
+                    log.debug(e.getMessage());
+                    log.debug(Arrays.toString(e.getStackTrace()));
+                } finally {
+                    compactionPending.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Writer shut down, compaction skipped.");
+            compactionPending.set(false);
+        }
+    }
+
+    /**
+     * returns the cached vault key or derives a new one with a fresh salt, if the password differs
+     * @param password plaintext password
+     * @return         key for encryption
+     */
+    private synchronized VaultKey getVaultKey(String password) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        if (vaultKey == null || !vaultKey.isDerivedFrom(password)) {
+            log.debug("Deriving a new vault key.");
+            vaultKey = VaultKey.derive(password);
+        }
+        return vaultKey;
     }
 
     /**
@@ -248,17 +1003,17 @@ public class SessionUtil {
      * @param password plaintext password
      * @return boolean, whether successful or not
      */
-    public boolean writeFile(String filepath, String password) {
+    public synchronized boolean writeFile(String filepath, String password) {
         log.info("Creation of new file requested.");
         log.debug("Path: {}", filepath);
 
-        String content;
+        VaultKey key;
+        GCMParameterSpec gcmParameterSpec;
 
-        // prepare content
+        // prepare key and IV; every save gets a fresh IV, but the key is only derived if the password changed
         try {
-            byte[] encryptOutput = EncryptionUtil.encrypt(this.contractsToString(), password);
-            log.debug("encrypted write: {}", Arrays.toString(encryptOutput));
-            content = Arrays.toString(encryptOutput);
+            key = this.getVaultKey(password);
+            gcmParameterSpec = EncryptionUtil.generateGCMSpecs();
         } catch (Exception e) {
             log.error("Error during key generation.");
             log.debug(e.getMessage());
@@ -266,42 +1021,154 @@ public class SessionUtil {
             throw new IllegalStateException("Error during key generation.");
         }
 
-        // actually write content
+        // take a consistent snapshot; changes after it are recorded in the journal of the new snapshot
+        Path target = Path.of(filepath);
+        SecretKey secretKey = key.getSecretKey();
+        byte[] iv = gcmParameterSpec.getIV();
+        boolean journaled = journal != null && contracts.locked(() -> journal.covers(target));
+        long version = contracts.getVersion();
+        List<Contract> snapshot = contracts.locked(() -> {
+            if (journaled) journal.beginSnapshot(target, secretKey, iv);
+            return contracts.values();
+        });
+
+        // actually write content: the contracts are serialized straight into the cipher, whose chunks are encrypted
+        // in parallel into a temporary file, which replaces the vault only once it is completely on disk
+        Path temp = null;
         try {
-            File myFile = new File(filepath);
-            if (myFile.createNewFile()) {
-                log.info("File {} created.", filepath);
-                FileWriter writer = new FileWriter(myFile);
-                writer.write(content);
-                writer.close();
-                log.info("Successfully written to file.");
-            } else {
-                Files.deleteIfExists(Path.of(filepath));
-                if (!myFile.createNewFile()) {
-                    log.error("Existing file {} was not deleted.", filepath);
-                    throw new IllegalStateException("Existing file " + filepath + " was not deleted.");
+            // every chunk authenticates the number of chunks, so the length is measured in a first pass
+            int chunkSize = EncryptionUtil.getCHUNK_SIZE();
+            int chunkCount = EncryptionUtil.chunkCount(this.serializedLength(snapshot), chunkSize);
+            VaultFile vault = new VaultFile(key.getIterations(), key.getKeySize(), key.getSalt(), iv, chunkSize,
+                    chunkCount);
+
+            Path directory = target.toAbsolutePath().getParent();
+            temp = Files.createTempFile(directory, target.getFileName() + ".", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                vault.writeHeader(channel);
+                try (OutputStream plaintext = EncryptionUtil.newChunkedEncryptingStream(channel, channel.position(),
+                        secretKey, iv, chunkSize, chunkCount)) {
+                    streamWriter.writeValue(plaintext, snapshot);
                 }
-                log.info("File {} created.", filepath);
-                FileWriter writer = new FileWriter(myFile);
-                writer.write(content);
-                writer.close();
-                log.info("Successfully written to file.");
+                channel.force(true);
             }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                log.warn("File system doesn't support atomic moves, replacing {} non-atomically.", target);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(directory);
+            log.info("Successfully written to file.");
         } catch (Exception e) {
             log.error("Error while writing file.");
             log.debug(e.getMessage());
             log.debug(Arrays.toString(e.getStackTrace()));
+            deleteQuietly(temp);
+            if (journaled) contracts.locked(() -> {
+                journal.abortSnapshot();
+                return null;
+            });
             throw new IllegalStateException("Error while writing file.");
         }
+        if (journaled) contracts.locked(() -> {
+            journal.commitSnapshot();
+            return null;
+        });
+        if (autoSaver != null && target.equals(vaultPath)) autoSaver.markSaved(version);
         return true;
     }
 
+    /**
+     * @param snapshot contracts to be saved
+     * @return         length of their serialization in bytes, without keeping it
+     */
+    private long serializedLength(List<Contract> snapshot) {
+        LengthCounter counter = new LengthCounter();
+        streamWriter.writeValue(counter, snapshot);
+        return counter.length;
+    }
+
+    /**
+     * discards everything written to it, but counts the bytes
+     */
+    private static final class LengthCounter extends OutputStream {
+        private long length;
+
+        @Override
+        public void write(int b) {
+            length++;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int count) {
+            length += count;
+        }
+    }
+
+    /**
+     * encrypts and writes the current content into a file on the writer thread
+     * @param filepath path where file gets stored
+     * @param password plaintext password
+     * @return         completes with true once the file is on disk or exceptionally, if writing failed
+     */
+    public CompletableFuture<Boolean> saveFile(String filepath, String password) {
+        return CompletableFuture.supplyAsync(() -> this.writeFile(filepath, password), writer);
+    }
+
+    /**
+     * persists the rename of a file; not every platform supports syncing a directory
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (Exception e) {
+            log.debug("Couldn't sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (Exception e) {
+            log.debug("Couldn't delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * closes a channel, ignoring errors
+     * @param channel channel to close, may be null
+     */
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (Exception e) {
+            log.debug("Couldn't close channel: {}", e.getMessage());
+        }
+    }
+
     /**
      * tries to export the current state into a file
-     * @return true if export successful
+     * @return completes with true, if the export was successful
      */
-    public boolean prepareShutdown() {
+    public CompletableFuture<Boolean> prepareShutdown() {
         String filepath = preferences.get("Filepath", System.getProperty("user.home"));
-        return this.writeFile(filepath, this.password);
+        return this.saveFile(filepath, this.password);
+    }
+
+    /**
+     * finishes the saves, which are queued on the writer thread, before the application stops
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (autoSaver != null) {
+            // saves right away instead of waiting for the debounce window
+            autoSaver.cancel();
+            if (autoSaver.isDirty()) writer.execute(this::autosave);
+        }
+        writer.shutdown();
+        if (!writer.awaitTermination(1, TimeUnit.MINUTES)) log.error("Pending saves didn't finish in time.");
     }
 }
@@ -0,0 +1,282 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * binary container of an encrypted vault
+ * <p>
+ * layout of version 1 (big endian):
+ * <pre>
+ * magic "CCVF"         4 bytes
+ * format version       2 bytes
+ * KDF iteration count  4 bytes
+ * KDF key size (bits)  2 bytes
+ * salt length          1 byte,  followed by the salt
+ * IV length            1 byte,  followed by the IV
+ * ciphertext           until the end of the file
+ * </pre>
+ * version 2 splits the ciphertext into independently authenticated chunks, which are en- and decrypted in
+ * parallel (see EncryptionUtil.newChunkedEncryptingStream); the header is followed by:
+ * <pre>
+ * chunk size           4 bytes, plaintext bytes per chunk
+ * chunk count          4 bytes
+ * chunks               until the end of the file, each chunk size bytes (the last one fewer) plus the tag
+ * </pre>
+ * Only the header of a chunked vault is read here: the chunks are read from the channel while they are decrypted
+ * (see EncryptionUtil.newChunkedDecryptingStream), so neither the ciphertext nor the plaintext is ever held as a
+ * whole. They aren't memory-mapped, since a mapping lives until it is garbage collected and keeps the file locked on
+ * Windows, where the next save couldn't replace the vault. Outdated formats are read onto the heap completely.
+ * Vaults written before version 1 are a decimal text dump of the byte array (e.g. "[0, 0, 0, 12, ...]") and
+ * are still readable; older vaults are written in the current format on the next save.
+ *
+ * @author Metallist-dev
+ * @version 0.4
+ */
+@Slf4j
+@Getter
+public class VaultFile {
+    /** "CCVF" in ASCII */
+    public static final int MAGIC = 0x43435646;
+    public static final int VERSION_LEGACY = 0;
+    public static final int VERSION_BINARY = 1;
+    public static final int VERSION_CHUNKED = 2;
+
+    private final int version;
+    private final int iterations;
+    private final int keySize;
+    private final byte[] salt;
+    private final byte[] iv;
+    /** ciphertext of a single AES-GCM message (version 0 and 1) */
+    private final byte[] ciphertext;
+
+    /** plaintext bytes per chunk (version 2) */
+    private final int chunkSize;
+    private final int chunkCount;
+
+    /** position of the first chunk in the file (version 2) */
+    private final long chunksPosition;
+
+    /** length of all chunks including their tags (version 2) */
+    private final long chunksLength;
+
+    /**
+     * creates the header of a vault in the current format, whose chunks get written behind it (see writeHeader)
+     * @param iterations PBKDF2 iteration count used to derive the key
+     * @param keySize    size of the derived key in bits
+     * @param salt       PBKDF2 salt
+     * @param iv         AES-GCM initialization vector, from which the nonces of the chunks are derived
+     * @param chunkSize  plaintext bytes per chunk
+     * @param chunkCount number of chunks
+     */
+    public VaultFile(int iterations, int keySize, byte[] salt, byte[] iv, int chunkSize, int chunkCount) {
+        this(VERSION_CHUNKED, iterations, keySize, salt, iv, new byte[0], chunkSize, chunkCount, 0, 0);
+    }
+
+    private VaultFile(int version, int iterations, int keySize, byte[] salt, byte[] iv, byte[] ciphertext,
+                      int chunkSize, int chunkCount, long chunksPosition, long chunksLength) {
+        if (salt.length > 0xFF || iv.length > 0xFF)
+            throw new IllegalArgumentException("Salt and IV must not exceed 255 bytes.");
+        this.version = version;
+        this.iterations = iterations;
+        this.keySize = keySize;
+        this.salt = salt;
+        this.iv = iv;
+        this.ciphertext = ciphertext;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+        this.chunksPosition = chunksPosition;
+        this.chunksLength = chunksLength;
+    }
+
+    /**
+     * checks whether the vault has to be rewritten in the current format
+     * @return true for vaults read from an outdated format
+     */
+    public boolean isOutdated() {
+        return version != VERSION_CHUNKED;
+    }
+
+    /**
+     * @return true, if the ciphertext is split into chunks (see getChunksPosition)
+     */
+    public boolean isChunked() {
+        return version == VERSION_CHUNKED;
+    }
+
+    /**
+     * reads a vault file in binary or legacy text format
+     * @param path path of the vault
+     * @return     parsed vault
+     */
+    public static VaultFile read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * reads a vault in binary or legacy text format; the chunks of the current format are left in the channel
+     * @param channel channel of the vault file, which has to stay open until the chunks are read
+     * @return        parsed vault
+     */
+    public static VaultFile read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        channel.position(0);
+
+        ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, magic);
+        if (!magic.hasRemaining() && magic.getInt(0) == MAGIC) return readBinary(channel, size);
+
+        log.info("No binary vault header found, reading legacy text format.");
+        if (size > Integer.MAX_VALUE) throw new IOException("Vault file is too large.");
+        ByteBuffer content = ByteBuffer.allocate((int) size);
+        channel.position(0);
+        readFully(channel, content);
+        content.flip();
+        return readLegacy(content);
+    }
+
+    /**
+     * parses the binary format; the ciphertext of a single message is read straight into its final array
+     * @param channel channel positioned behind the magic number
+     * @param size    size of the whole file
+     * @return        parsed vault
+     */
+    private static VaultFile readBinary(FileChannel channel, long size) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(Short.BYTES + Integer.BYTES + Short.BYTES + 1);
+        readExactly(channel, fixed);
+
+        int version = fixed.getShort();
+        if (version != VERSION_BINARY && version != VERSION_CHUNKED)
+            throw new IOException("Unsupported vault format version " + version + ".");
+        int iterations = fixed.getInt();
+        int keySize = Short.toUnsignedInt(fixed.getShort());
+
+        ByteBuffer salt = ByteBuffer.allocate(Byte.toUnsignedInt(fixed.get()));
+        readExactly(channel, salt);
+        ByteBuffer ivLength = ByteBuffer.allocate(1);
+        readExactly(channel, ivLength);
+        ByteBuffer iv = ByteBuffer.allocate(Byte.toUnsignedInt(ivLength.get()));
+        readExactly(channel, iv);
+
+        if (version == VERSION_CHUNKED) {
+            ByteBuffer layout = ByteBuffer.allocate(2 * Integer.BYTES);
+            readExactly(channel, layout);
+            int chunkSize = layout.getInt();
+            int chunkCount = layout.getInt();
+
+            long remaining = size - channel.position();
+            if (remaining < 0) throw new IOException("Vault header is truncated.");
+            return new VaultFile(version, iterations, keySize, salt.array(), iv.array(), new byte[0],
+                    chunkSize, chunkCount, channel.position(), remaining);
+        }
+
+        long remaining = size - channel.position();
+        if (remaining < 0) throw new IOException("Vault header is truncated.");
+        if (remaining > Integer.MAX_VALUE) throw new IOException("Vault file is too large.");
+        ByteBuffer ciphertext = ByteBuffer.allocate((int) remaining);
+        readExactly(channel, ciphertext);
+
+        return new VaultFile(version, iterations, keySize, salt.array(), iv.array(), ciphertext.array(), 0, 0, 0, 0);
+    }
+
+    /**
+     * fills the buffer until it is full or the channel is exhausted
+     */
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return;
+        }
+    }
+
+    /**
+     * fills the buffer completely and flips it for reading
+     */
+    private static void readExactly(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        readFully(channel, buffer);
+        if (buffer.hasRemaining()) throw new IOException("Vault header is truncated.");
+        buffer.flip();
+    }
+
+    /**
+     * parses the legacy format: a decimal text dump of [IV length (int), IV, ciphertext], where the IV doubles as
+     * the PBKDF2 salt
+     * @param content whole file content
+     * @return        parsed vault
+     */
+    private static VaultFile readLegacy(ByteBuffer content) {
+        ByteBuffer data = ByteBuffer.allocate(content.remaining() / 2 + 1);
+
+        int value = 0;
+        boolean negative = false;
+        boolean inNumber = false;
+        while (content.hasRemaining()) {
+            byte c = content.get();
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                inNumber = true;
+            } else if (c == '-') {
+                negative = true;
+            } else {
+                if (inNumber) data.put(toByte(negative ? -value : value));
+                value = 0;
+                negative = false;
+                inNumber = false;
+            }
+        }
+        if (inNumber) data.put(toByte(negative ? -value : value));
+        data.flip();
+
+        int ivLength = data.getInt();
+        if (ivLength < 0 || ivLength > data.remaining())
+            throw new IllegalArgumentException("IV length is incorrect.");
+
+        byte[] iv = new byte[ivLength];
+        data.get(iv);
+        byte[] ciphertext = new byte[data.remaining()];
+        data.get(ciphertext);
+
+        return new VaultFile(VERSION_LEGACY, EncryptionUtil.getITERATION_COUNT(), EncryptionUtil.getKEYSIZE(),
+                iv, iv, ciphertext, 0, 0, 0, 0);
+    }
+
+    private static byte toByte(int value) {
+        if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE)
+            throw new NumberFormatException("Value out of range: " + value);
+        return (byte) value;
+    }
+
+    /**
+     * writes only the header, so that the ciphertext can be written behind it
+     * @param channel target channel
+     */
+    public void writeHeader(WritableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(headerLength());
+        header.putInt(MAGIC);
+        header.putShort((short) (isChunked() ? VERSION_CHUNKED : VERSION_BINARY));
+        header.putInt(iterations);
+        header.putShort((short) keySize);
+        header.put((byte) salt.length);
+        header.put(salt);
+        header.put((byte) iv.length);
+        header.put(iv);
+        if (isChunked()) header.putInt(chunkSize).putInt(chunkCount);
+        header.flip();
+
+        while (header.hasRemaining()) channel.write(header);
+    }
+
+    private int headerLength() {
+        return Integer.BYTES + Short.BYTES + Integer.BYTES + Short.BYTES + 1 + salt.length + 1 + iv.length
+                + (isChunked() ? 2 * Integer.BYTES : 0);
+    }
+}
@@ -0,0 +1,80 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+
+/**
+ * key of a vault together with the KDF parameters it was derived with, so that the costly key derivation runs
+ * only once per unlock instead of on every save
+ *
+ * @author Metallist-dev
+ * @version 0.1
+ */
+@Getter
+public class VaultKey {
+    private static final String DIGEST_ALGO = "SHA-256";
+
+    private final byte[] salt;
+    private final int iterations;
+    private final int keySize;
+    private final SecretKey secretKey;
+
+    /** salted digest of the password, used to recognize it without keeping another plaintext copy */
+    @Getter(AccessLevel.NONE)
+    private final byte[] passwordDigest;
+
+    /**
+     * wraps an already derived key
+     * @param password   password the key was derived from
+     * @param salt       PBKDF2 salt
+     * @param iterations PBKDF2 iteration count
+     * @param keySize    key size in bits
+     * @param secretKey  derived key
+     */
+    public VaultKey(String password, byte[] salt, int iterations, int keySize, SecretKey secretKey)
+            throws NoSuchAlgorithmException {
+        this.salt = salt;
+        this.iterations = iterations;
+        this.keySize = keySize;
+        this.secretKey = secretKey;
+        this.passwordDigest = digest(password, salt);
+    }
+
+    /**
+     * derives a new key with a fresh salt and the current KDF parameters
+     * @param password plaintext password
+     * @return         derived key
+     */
+    public static VaultKey derive(String password) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        byte[] salt = EncryptionUtil.generateSalt();
+        int iterations = EncryptionUtil.getITERATION_COUNT();
+        int keySize = EncryptionUtil.getKEYSIZE();
+        return new VaultKey(password, salt, iterations, keySize,
+                EncryptionUtil.generateKeyFromPassword(password, salt, iterations, keySize));
+    }
+
+    /**
+     * checks whether this key was derived from the given password
+     * @param password plaintext password
+     * @return         true if the key can be reused for this password
+     */
+    public boolean isDerivedFrom(String password) {
+        try {
+            return MessageDigest.isEqual(passwordDigest, digest(password, salt));
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    private static byte[] digest(String password, byte[] salt) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGO);
+        digest.update(salt);
+        return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+}
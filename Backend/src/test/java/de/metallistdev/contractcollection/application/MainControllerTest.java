@@ -6,6 +6,11 @@ import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.SerializationFeature;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.databind.node.ObjectNode;
+import de.metallistdev.contractcollection.application.utilities.BatchOperation;
+import de.metallistdev.contractcollection.application.utilities.ContractChanges;
+import de.metallistdev.contractcollection.application.utilities.EventBroadcaster;
+import de.metallistdev.contractcollection.application.utilities.DeadlineEngine;
+import de.metallistdev.contractcollection.application.utilities.ExpenseStatistics;
 import de.metallistdev.contractcollection.application.utilities.SessionUtil;
 import de.metallistdev.contractcollection.commons.Contract;
 import org.mockito.InjectMocks;
@@ -16,14 +21,24 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static de.metallistdev.contractcollection.application.utilities.ReasonCodes.*;
 import static org.mockito.Mockito.*;
@@ -41,6 +56,9 @@ public class MainControllerTest extends AbstractTestNGSpringContextTests {
     @Mock
     SessionUtil session;
 
+    @Mock
+    EventBroadcaster events;
+
     @InjectMocks
     MainController controller;
 
@@ -67,7 +85,7 @@ public class MainControllerTest extends AbstractTestNGSpringContextTests {
         request = new MockHttpServletRequest();
         RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
 
-        controller = new MainController(session);
+        controller = new MainController(session, events);
     }
 
     @Test
@@ -109,32 +127,22 @@ public class MainControllerTest extends AbstractTestNGSpringContextTests {
         JsonNode requestJson = mapper.readTree("{\"id\": 1, \"name\": \"health insurance\"}");
 
         when(session.removeContract(anyInt())).thenReturn(true);
-        when(session.removeContract(any(Contract.class))).thenReturn(true);
         ResponseEntity<JsonNode> response = controller.deleteContract(requestJson);
         assertNotNull(response.getBody());
         assertEquals(response.getStatusCode(), HttpStatus.OK);
         assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_DELETE_SUCCESS.getCodenumber());
 
         when(session.removeContract(anyInt())).thenReturn(false);
-        when(session.removeContract(any())).thenReturn(true);
         response = controller.deleteContract(requestJson);
         assertNotNull(response.getBody());
-        assertEquals(response.getStatusCode(), HttpStatus.OK);
-        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_DELETE_SUCCESS.getCodenumber());
+        assertEquals(response.getStatusCode(), HttpStatus.NOT_FOUND);
+        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_DELETE_MISSING.getCodenumber());
 
-        when(session.removeContract(anyInt())).thenReturn(false);
-        when(session.removeContract(any())).thenReturn(false);
+        when(session.removeContract(anyInt())).thenThrow(IllegalStateException.class);
         response = controller.deleteContract(requestJson);
         assertNotNull(response.getBody());
         assertEquals(response.getStatusCode(), HttpStatus.INTERNAL_SERVER_ERROR);
         assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_DELETE_ERROR.getCodenumber());
-
-        when(session.removeContract(anyInt())).thenThrow(NullPointerException.class);
-        response = controller.deleteContract(requestJson);
-        assertNotNull(response.getBody());
-        assertEquals(response.getStatusCode(), HttpStatus.NOT_FOUND);
-        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_DELETE_MISSING.getCodenumber());
-
     }
 
     @Test
@@ -156,27 +164,54 @@ public class MainControllerTest extends AbstractTestNGSpringContextTests {
 
         when(session.getContracts()).thenReturn(contracts);
 
-        ResponseEntity<JsonNode> response = controller.getAllContracts();
+        ResponseEntity<StreamingResponseBody> response = controller.getAllContracts(null, 0, null);
 
         assertNotNull(response.getBody());
         assertEquals(response.getStatusCode(), HttpStatus.OK);
-        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_GENERAL_SUCCESS.getCodenumber());
+        JsonNode body = readStream(response.getBody());
+        assertEquals(body.get("head").get("reasonCode").asString(), RC_GENERAL_SUCCESS.getCodenumber());
+        assertEquals(body.get("body").size(), contracts.size());
+
+        // pages
+        when(session.getContracts(anyInt(), anyInt())).thenReturn(contracts.subList(0, 1));
+        response = controller.getAllContracts(1, 0, null);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertEquals(readStream(response.getBody()).get("body").size(), 1);
+        verify(session).getContracts(0, 1);
+
+        response = controller.getAllContracts(0, 0, null);
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+        assertEquals(readStream(response.getBody()).get("head").get("reasonCode").asString(),
+                RC_GENERAL_ERROR.getCodenumber());
+    }
+
+    private JsonNode readStream(StreamingResponseBody body) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            body.writeTo(output);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+        return mapper.readTree(output.toByteArray());
     }
 
     @Test
     public void test_03_readSingleContract() {
 
         when(session.getSingleContract(anyInt())).thenReturn(testContract);
-        ResponseEntity<JsonNode> response = controller.getSingleContract(1000);
+        ResponseEntity<StreamingResponseBody> response = controller.getSingleContract(1000, null);
         assertNotNull(response.getBody());
         assertEquals(response.getStatusCode(), HttpStatus.OK);
-        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_GENERAL_SUCCESS.getCodenumber());
+        JsonNode body = readStream(response.getBody());
+        assertEquals(body.get("head").get("reasonCode").asString(), RC_GENERAL_SUCCESS.getCodenumber());
+        assertEquals(body.get("body").get("contractNr").asString(), testContract.getContractNr());
 
         when(session.getSingleContract(anyInt())).thenReturn(null);
-        response = controller.getSingleContract(0);
+        response = controller.getSingleContract(0, null);
         assertNotNull(response.getBody());
         assertEquals(response.getStatusCode(), HttpStatus.NOT_FOUND);
-        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_GENERAL_ERROR.getCodenumber());
+        assertEquals(readStream(response.getBody()).get("head").get("reasonCode").asString(),
+                RC_GENERAL_ERROR.getCodenumber());
     }
 
     @Test
@@ -202,6 +237,24 @@ public class MainControllerTest extends AbstractTestNGSpringContextTests {
         assertNotNull(response.getBody());
         assertEquals(response.getStatusCode(), HttpStatus.CONFLICT);
         assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_UPDATE_ERROR.getCodenumber());
+
+        when(session.updateContract(anyInt(), anyString(), anyString()))
+                .thenThrow(new IllegalArgumentException("cycle has to be an integer of at least 1"));
+        response = controller.updateContract(1000, requestJson);
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_UPDATE_ERROR.getCodenumber());
+
+        // a body without "key" is a merge patch
+        ObjectNode patch = mapper.createObjectNode().put("name", newValue).put("expenses", 120.5);
+        when(session.patchContract(1000, patch)).thenReturn(updatedContract);
+        response = controller.updateContract(1000, patch);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertEquals(response.getBody().get("body").get("name").asString(), newValue);
+
+        when(session.patchContract(1000, patch)).thenThrow(new IllegalArgumentException("expenses has to be a number"));
+        response = controller.updateContract(1000, patch);
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_UPDATE_ERROR.getCodenumber());
     }
 
     @Test
@@ -209,21 +262,22 @@ public class MainControllerTest extends AbstractTestNGSpringContextTests {
         ArrayList<Contract> mockList = new ArrayList<>();
         mockList.add(testContract);
         mockList.add(testContract2);
-        String filepath = new File("src/test/resources/testExportedFile.txt").getAbsolutePath();
+        String filepath = new File(System.getProperty("java.io.tmpdir"), "testExportedFile.txt").getAbsolutePath();
 
         ObjectNode requestJson = mapper.createObjectNode();
         requestJson.put("filepath", filepath);
         requestJson.put("password", "123superSecret!");
         requestJson.put("overwrite", true);
 
-        doNothing().when(session).removeAllContracts();
+        doNothing().when(session).clearForImport();
         when(session.loadFile(anyString(), anyString())).thenReturn(mockList);
         ResponseEntity<JsonNode> response = controller.importFile(requestJson);
         assertNotNull(response.getBody());
         assertEquals(response.getStatusCode(), HttpStatus.OK);
         assertEquals(response.getBody().get("body").get(0).get("name").asString(), "testing insurance");
+        verify(session).clearForImport();
 
-        doNothing().when(session).removeAllContracts();
+        doNothing().when(session).clearForImport();
         when(session.loadFile(anyString(), anyString())).thenReturn(null);
         response = controller.importFile(requestJson);
         assertNotNull(response.getBody());
@@ -233,7 +287,7 @@ public class MainControllerTest extends AbstractTestNGSpringContextTests {
 
     @Test
     public void test_06_exportContracts() throws JacksonException {
-        String filepath = new File("src/test/resources/testExportedFile.txt").getAbsolutePath();
+        String filepath = new File(System.getProperty("java.io.tmpdir"), "testExportedFile.txt").getAbsolutePath();
 
         ObjectNode requestJson = mapper.createObjectNode();
         requestJson.put("filepath", filepath);
@@ -241,27 +295,229 @@ public class MainControllerTest extends AbstractTestNGSpringContextTests {
         JsonNode contracts = mapper.readTree("[{    \"id\": 1,    \"category\": \"insurance\",    \"name\": \"health insurance\",    \"expenses\": 100,    \"cycle\": 12,    \"customerNr\": \"12345\",    \"contractNr\": \"67890\",    \"startDate\": \"2022-01-01\",    \"contractPeriod\": 1,    \"periodOfNotice\": 2,    \"description\": \"public health insurance - student tariff\",    \"documentPath\": \"/home/user/example\"  },  {    \"id\": 2,    \"category\": \"insurance\",    \"name\": \"health insurance\",    \"expenses\": 100,    \"cycle\": 12,    \"customerNr\": \"12345\",    \"contractNr\": \"67890\",    \"startDate\": \"2022-01-01\",    \"contractPeriod\": 1,    \"periodOfNotice\": 2,    \"description\": \"public health insurance - student tariff\",    \"documentPath\": \"/home/user/example\"  }]");
         requestJson.set("contracts", contracts);
 
-        when(session.writeFile(anyString(), anyString())).thenReturn(true);
+        when(session.saveFile(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(true));
         ResponseEntity<JsonNode> response = controller.exportToFile(requestJson);
         assertNotNull(response.getBody());
         assertEquals(response.getStatusCode(), HttpStatus.OK);
         assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_EXPORT_SUCCESS.getCodenumber());
 
-        when(session.writeFile(anyString(), anyString())).thenReturn(false);
+        when(session.saveFile(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(false));
         response = controller.exportToFile(requestJson);
         assertNotNull(response.getBody());
         assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
         assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_EXPORT_FAILED.getCodenumber());
+
+        when(session.saveFile(anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Error while writing file.")));
+        response = controller.exportToFile(requestJson);
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+
+        // without waiting, the export is only queued
+        ReflectionTestUtils.setField(controller, "waitForSave", false);
+        try {
+            when(session.saveFile(anyString(), anyString())).thenReturn(new CompletableFuture<>());
+            response = controller.exportToFile(requestJson);
+            assertEquals(response.getStatusCode(), HttpStatus.ACCEPTED);
+            assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_EXPORT_ACCEPTED.getCodenumber());
+        } finally {
+            ReflectionTestUtils.setField(controller, "waitForSave", true);
+        }
     }
 
     @Test
     public void test_07_shutdown() {
-        when(session.prepareShutdown()).thenReturn(true);
+        when(session.prepareShutdown()).thenReturn(CompletableFuture.completedFuture(true));
         ResponseEntity<JsonNode> response = controller.prepareShutdown();
         assertEquals(response.getStatusCode(), HttpStatus.OK);
 
-        when(session.prepareShutdown()).thenReturn(false);
+        when(session.prepareShutdown()).thenReturn(CompletableFuture.completedFuture(false));
         response = controller.prepareShutdown();
         assertEquals(response.getStatusCode(), HttpStatus.INTERNAL_SERVER_ERROR);
+
+        ReflectionTestUtils.setField(controller, "waitForSave", false);
+        try {
+            when(session.prepareShutdown()).thenReturn(new CompletableFuture<>());
+            response = controller.prepareShutdown();
+            assertEquals(response.getStatusCode(), HttpStatus.ACCEPTED);
+        } finally {
+            ReflectionTestUtils.setField(controller, "waitForSave", true);
+        }
+    }
+
+    @Test
+    public void test_08_ndjsonImportExport() throws IOException {
+        InputStream input = new ByteArrayInputStream("{\"name\": \"rent\"}\n".getBytes(StandardCharsets.UTF_8));
+
+        when(session.importNdjson(any())).thenReturn(1L);
+        ResponseEntity<JsonNode> response = controller.importNdjson(true, input);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_IMPORT_SUCCESS.getCodenumber());
+        assertEquals(response.getBody().get("body").get("processed").asInt(), 1);
+        verify(session).removeAllContracts();
+
+        when(session.importNdjson(any())).thenThrow(new IllegalArgumentException("Failed to read data."));
+        response = controller.importNdjson(false, input);
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+        assertEquals(response.getBody().get("head").get("reasonCode").asString(), RC_IMPORT_FAILED.getCodenumber());
+
+        ResponseEntity<StreamingResponseBody> export = controller.exportNdjson();
+        assertEquals(export.getStatusCode(), HttpStatus.OK);
+        assertNotNull(export.getBody());
+        export.getBody().writeTo(new ByteArrayOutputStream());
+        verify(session).exportNdjson(any());
+    }
+
+    @Test
+    public void test_09_lookups() {
+        when(session.getContractsByCategory("insurance")).thenReturn(List.of(testContract, testContract2));
+        when(session.getContractsByContractNr("789xyz")).thenReturn(List.of(testContract));
+        when(session.getContractsByCustomerNr(anyString())).thenReturn(List.of());
+
+        ResponseEntity<JsonNode> response = controller.getContractsByCategory("insurance");
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertEquals(response.getBody().get("body").size(), 2);
+
+        response = controller.getContractsByContractNr("789xyz");
+        assertEquals(response.getBody().get("body").get(0).get("contractNr").asString(), "789xyz");
+
+        response = controller.getContractsByCustomerNr("unknown");
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertTrue(response.getBody().get("body").isEmpty());
+    }
+
+    @Test
+    public void test_10_statistics() {
+        ExpenseStatistics statistics = new ExpenseStatistics();
+        statistics.contractAdded(testContract2);
+        when(session.getStatistics()).thenReturn(statistics);
+
+        ResponseEntity<JsonNode> response = controller.getStatistics();
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertEquals(response.getBody().get("body").get("count").asInt(), 1);
+        assertEquals(response.getBody().get("body").get("yearly").asDouble(), 200.0);
+        assertEquals(response.getBody().get("body").get("categories").get("insurance").get("count").asInt(), 1);
+    }
+
+    @Test
+    public void test_11_deadlines() {
+        DeadlineEngine deadlines = new DeadlineEngine();
+        deadlines.contractAdded(new Contract(1, "insurance", "monthly", 10.0f, 12, "123abc", "789xyz",
+                "2022-01-01", 1, 0, "test description", "/path/to/stuff"));
+        when(session.getDeadlines()).thenReturn(deadlines);
+
+        ResponseEntity<JsonNode> response = controller.getDeadlines("5w");
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertEquals(response.getBody().get("body").size(), 1);
+        assertEquals(response.getBody().get("body").get(0).get("contract").get("id").asInt(), 1);
+        assertTrue(response.getBody().get("body").get(0).has("deadline"));
+
+        response = controller.getDeadlines("30 days");
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void test_12_batch() throws JacksonException {
+        JsonNode request = mapper.readTree("""
+                [{"op": "add", "contract": {"category": "insurance", "name": "car", "expenses": 30, "cycle": 12,
+                  "customerNr": "1", "contractNr": "2", "startDate": "2023-01-01", "contractPeriod": 12,
+                  "periodOfNotice": 4, "description": "", "documentPath": ""}},
+                 {"op": "update", "id": 1000, "key": "name", "value": "renamed"},
+                 {"op": "delete", "id": 1001}]""");
+
+        when(session.applyBatch(anyList())).thenAnswer(invocation -> {
+            List<BatchOperation> operations = invocation.getArgument(0);
+            assertEquals(operations.stream().map(BatchOperation::type).toList(), List.of(
+                    BatchOperation.Type.ADD, BatchOperation.Type.UPDATE, BatchOperation.Type.DELETE));
+            return List.of(
+                    new BatchOperation.Result(operations.get(0), RC_CREATE_SUCCESS, testContract2),
+                    new BatchOperation.Result(operations.get(1), RC_UPDATE_SUCCESS, testContract),
+                    new BatchOperation.Result(operations.get(2), RC_DELETE_SUCCESS, null));
+        });
+        ResponseEntity<JsonNode> response = controller.applyBatch(request);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        JsonNode body = response.getBody().get("body");
+        assertTrue(body.get("applied").booleanValue());
+        assertEquals(body.get("results").size(), 3);
+        assertEquals(body.get("results").get(1).get("reasonCode").asString(), RC_UPDATE_SUCCESS.getCodenumber());
+        assertEquals(body.get("results").get(2).get("id").asInt(), 1001);
+
+        // an unreadable operation fails the batch
+        request = mapper.readTree("[{\"op\": \"delete\", \"id\": 1}, {\"op\": \"rename\"}]");
+        doAnswer(invocation -> {
+            List<BatchOperation> operations = invocation.getArgument(0);
+            assertEquals(operations.get(1).type(), BatchOperation.Type.INVALID);
+            return List.of(
+                    new BatchOperation.Result(operations.get(0), RC_DELETE_SUCCESS, null),
+                    new BatchOperation.Result(operations.get(1), RC_GENERAL_ERROR, null));
+        }).when(session).applyBatch(anyList());
+        response = controller.applyBatch(request);
+        assertEquals(response.getStatusCode(), HttpStatus.CONFLICT);
+        assertFalse(response.getBody().get("body").get("applied").booleanValue());
+
+        response = controller.applyBatch(mapper.readTree("{\"op\": \"delete\"}"));
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void test_13_conditionalGet() {
+        when(session.getVersion()).thenReturn(7L);
+        when(session.getContracts()).thenReturn(List.of(testContract));
+        ResponseEntity<StreamingResponseBody> response = controller.getAllContracts(null, 0, null);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        String eTag = response.getHeaders().getETag();
+        assertNotNull(eTag);
+        assertTrue(eTag.startsWith("\""));
+
+        // an unchanged list is neither fetched nor serialized
+        clearInvocations(session);
+        response = controller.getAllContracts(null, 0, "\"other\", " + eTag);
+        assertEquals(response.getStatusCode(), HttpStatus.NOT_MODIFIED);
+        assertNull(response.getBody());
+        assertEquals(response.getHeaders().getETag(), eTag);
+        verify(session, never()).getContracts();
+
+        when(session.getVersion()).thenReturn(8L);
+        response = controller.getAllContracts(null, 0, eTag);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertNotEquals(response.getHeaders().getETag(), eTag);
+
+        // single contracts are tagged with their own version
+        when(session.getVersion(1000)).thenReturn(3L);
+        when(session.getSingleContract(1000)).thenReturn(testContract);
+        ResponseEntity<StreamingResponseBody> single = controller.getSingleContract(1000, null);
+        assertEquals(single.getStatusCode(), HttpStatus.OK);
+        String contractTag = single.getHeaders().getETag();
+        clearInvocations(session);
+        single = controller.getSingleContract(1000, contractTag);
+        assertEquals(single.getStatusCode(), HttpStatus.NOT_MODIFIED);
+        verify(session, never()).getSingleContract(anyInt());
+
+        // a missing contract never matches
+        assertEquals(controller.getSingleContract(1001, "*").getStatusCode(), HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void test_14_changes() {
+        when(session.getChanges(5L)).thenReturn(new ContractChanges(8, false, List.of(testContract), List.of(1001)));
+        ResponseEntity<StreamingResponseBody> response = controller.getChanges(5);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        JsonNode body = readStream(response.getBody()).get("body");
+        assertEquals(body.get("version").asLong(), 8);
+        assertFalse(body.get("snapshot").booleanValue());
+        assertEquals(body.get("contracts").get(0).get("id").asInt(), 1000);
+        assertEquals(body.get("removed").get(0).asInt(), 1001);
+
+        when(session.getChanges(0L)).thenReturn(new ContractChanges(8, true, List.of(testContract, testContract2), List.of()));
+        body = readStream(controller.getChanges(0).getBody()).get("body");
+        assertTrue(body.get("snapshot").booleanValue());
+        assertEquals(body.get("contracts").size(), 2);
+        assertTrue(body.get("removed").isEmpty());
+    }
+
+    @Test
+    public void test_15_events() {
+        SseEmitter emitter = new SseEmitter();
+        when(events.subscribe()).thenReturn(emitter);
+        assertSame(controller.subscribeEvents(), emitter);
     }
 }
@@ -0,0 +1,79 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class AutoSaverTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterClass
+    public void afterClass() {
+        scheduler.shutdownNow();
+    }
+
+    private Contract contract(int id) {
+        return new Contract(id, "living", "rent", 250, 12, "98741", "123650", "2022-07-01", 1, 8, "", "");
+    }
+
+    /**
+     * repository with a saver, which counts its saves
+     */
+    private AutoSaver saver(ContractRepository repository, AtomicInteger saves, Duration debounce, Duration maxLatency) {
+        AutoSaver[] saver = new AutoSaver[1];
+        saver[0] = new AutoSaver(scheduler, debounce, maxLatency, repository::getVersion, () -> {
+            long version = repository.getVersion();
+            saves.incrementAndGet();
+            saver[0].markSaved(version);
+            return true;
+        });
+        repository.addListener(saver[0]);
+        return saver[0];
+    }
+
+    @Test
+    public void test_00_coalescesBursts() throws InterruptedException {
+        ContractRepository repository = new ContractRepository();
+        AtomicInteger saves = new AtomicInteger();
+        AutoSaver saver = saver(repository, saves, Duration.ofMillis(100), Duration.ofSeconds(10));
+        assertFalse(saver.isDirty());
+
+        for (int i = 1; i <= 1000; i++) repository.add(contract(i));
+        repository.update(1, contract -> contract.setName("changed"));
+        assertTrue(saver.isDirty());
+        assertEquals(saves.get(), 0);
+
+        for (int i = 0; i < 50 && saver.isDirty(); i++) Thread.sleep(20);
+        assertFalse(saver.isDirty());
+        Thread.sleep(200);
+        assertEquals(saves.get(), 1);
+    }
+
+    @Test
+    public void test_01_maxLatency() throws InterruptedException {
+        ContractRepository repository = new ContractRepository();
+        AtomicInteger saves = new AtomicInteger();
+        AutoSaver saver = saver(repository, saves, Duration.ofMillis(200), Duration.ofMillis(300));
+
+        // the changes never pause for the debounce window, but are saved within the max latency
+        for (int i = 1; i <= 40; i++) {
+            repository.add(contract(i));
+            Thread.sleep(25);
+        }
+        assertTrue(saves.get() >= 2);
+
+        for (int i = 0; i < 50 && saver.isDirty(); i++) Thread.sleep(20);
+        assertFalse(saver.isDirty());
+        saver.cancel();
+    }
+}
@@ -0,0 +1,97 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class ChangeJournalTest {
+
+    private final SecretKey key = EncryptionUtil.generateKeyFromPassword("123superSecret!",
+            EncryptionUtil.generateSalt(), 1000, 256);
+
+    private final byte[] iv = EncryptionUtil.generateGCMSpecs().getIV();
+
+    public ChangeJournalTest() throws Exception {
+    }
+
+    private List<String> replay(Path path, byte[] snapshotIv, ChangeJournal.Replay[] result) throws Exception {
+        List<String> changes = new ArrayList<>();
+        result[0] = ChangeJournal.replay(path, key, snapshotIv,
+                change -> changes.add(new String(change, StandardCharsets.UTF_8)));
+        return changes;
+    }
+
+    @Test
+    public void test_00_appendAndReplay() throws Exception {
+        Path path = Files.createTempFile("contracts", ".journal");
+        ChangeJournal.Replay[] result = new ChangeJournal.Replay[1];
+        try {
+            try (ChangeJournal journal = ChangeJournal.create(path, key, iv)) {
+                journal.append("first".getBytes(StandardCharsets.UTF_8));
+                journal.append("second".getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(replay(path, iv, result), List.of("first", "second"));
+            assertEquals(result[0].frames(), 2);
+            assertTrue(result[0].complete());
+
+            // appending continues after the replayed frames
+            try (ChangeJournal journal = ChangeJournal.open(path, key, iv, result[0])) {
+                journal.append("third".getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(replay(path, iv, result), List.of("first", "second", "third"));
+
+            // a journal of another snapshot is ignored
+            assertTrue(replay(path, EncryptionUtil.generateGCMSpecs().getIV(), result).isEmpty());
+            assertNull(result[0]);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void test_01_damagedJournal() throws Exception {
+        Path path = Files.createTempFile("contracts", ".journal");
+        ChangeJournal.Replay[] result = new ChangeJournal.Replay[1];
+        try {
+            long firstFrameEnd;
+            try (ChangeJournal journal = ChangeJournal.create(path, key, iv)) {
+                journal.append("first".getBytes(StandardCharsets.UTF_8));
+                firstFrameEnd = journal.size();
+                journal.append("second".getBytes(StandardCharsets.UTF_8));
+            }
+            long length = Files.size(path);
+
+            // a torn frame at the end is cut off and overwritten by the next append
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(length - 3);
+            }
+            assertEquals(replay(path, iv, result), List.of("first"));
+            assertEquals(result[0].length(), firstFrameEnd);
+            assertTrue(result[0].complete());
+            try (ChangeJournal journal = ChangeJournal.open(path, key, iv, result[0])) {
+                journal.append("again".getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(replay(path, iv, result), List.of("first", "again"));
+
+            // a modified frame fails authentication and ends the replay
+            byte[] content = Files.readAllBytes(path);
+            content[content.length - 1] ^= 1;
+            Files.write(path, content);
+            assertEquals(replay(path, iv, result), List.of("first"));
+            assertFalse(result[0].complete());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
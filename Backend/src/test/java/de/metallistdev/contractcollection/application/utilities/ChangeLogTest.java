@@ -0,0 +1,55 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class ChangeLogTest {
+
+    @Test
+    public void test_00_since() {
+        ChangeLog log = new ChangeLog(16);
+        log.record(1, 1, false);
+        log.record(2, 2, false);
+        log.record(3, 1, false);
+        log.record(4, 3, false);
+        log.record(5, 2, true);
+
+        ChangeLog.Delta delta = log.since(0);
+        assertEquals(delta.version(), 5);
+        assertEquals(delta.changed(), new int[] {1, 3});
+        assertEquals(delta.removed(), new int[] {2});
+
+        delta = log.since(3);
+        assertEquals(delta.changed(), new int[] {3});
+        assertEquals(delta.removed(), new int[] {2});
+
+        // a removed and re-added contract counts as changed
+        log.record(6, 2, false);
+        delta = log.since(4);
+        assertEquals(delta.changed(), new int[] {2});
+        assertEquals(delta.removed().length, 0);
+
+        assertEquals(log.since(6).changed().length, 0);
+        assertNull(log.since(7));
+    }
+
+    @Test
+    public void test_01_wrapAndReset() {
+        ChangeLog log = new ChangeLog(4);
+        for (int version = 1; version <= 10; version++) log.record(version, version, false);
+
+        // only the changes after the oldest kept entry are complete
+        assertNull(log.since(5));
+        assertEquals(log.since(6).changed(), new int[] {7, 8, 9, 10});
+        assertEquals(log.since(8).changed(), new int[] {9, 10});
+
+        log.reset(11);
+        assertNull(log.since(10));
+        assertEquals(log.since(11).changed().length, 0);
+        log.record(12, 1, false);
+        assertEquals(log.since(11).changed(), new int[] {1});
+    }
+}
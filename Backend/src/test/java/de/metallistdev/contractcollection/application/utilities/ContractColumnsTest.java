@@ -0,0 +1,68 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class ContractColumnsTest {
+
+    private Contract contract(int id, float expenses, int cycle, int contractPeriod, int periodOfNotice) {
+        return new Contract(id, "insurance", "name", expenses, cycle, "12345", "67890", "2022-01-01",
+                contractPeriod, periodOfNotice, "test description", "/path/to/stuff");
+    }
+
+    @Test
+    public void test_00_summarize() {
+        ContractColumns columns = ContractColumns.of(1, List.of(
+                contract(1, 10.0f, 12, 12, 4),
+                contract(2, 120.0f, 1, 24, 2),
+                contract(3, 5.0f, 4, 1, 0)));
+
+        assertEquals(columns.size(), 3);
+        assertEquals(columns.getId(2), 3);
+
+        ContractColumns.Summary summary = columns.summarize();
+        assertEquals(summary.count(), 3);
+        assertEquals(summary.yearly(), 260.0, 1e-9);
+        assertEquals(summary.monthly(), 260.0 / 12, 1e-9);
+        assertEquals(summary.averageExpenses(), 45.0, 1e-9);
+        assertEquals(summary.minExpenses(), 5.0, 1e-9);
+        assertEquals(summary.maxExpenses(), 120.0, 1e-9);
+        assertEquals(summary.averageContractPeriod(), 37.0 / 3, 1e-9);
+        assertEquals(summary.averagePeriodOfNotice(), 2.0, 1e-9);
+
+        assertEquals(ContractColumns.EMPTY.summarize().count(), 0);
+    }
+
+    @Test
+    public void test_01_parallelReduction() {
+        List<Contract> contracts = new ArrayList<>();
+        for (int i = 1; i <= 250_000; i++) contracts.add(contract(i, 2.0f, 12, 12, i % 2 * 2));
+
+        ContractColumns.Summary summary = ContractColumns.of(1, contracts).summarize();
+        assertEquals(summary.count(), 250_000);
+        assertEquals(summary.yearly(), 6_000_000.0, 1e-6);
+        assertEquals(summary.averagePeriodOfNotice(), 1.0, 1e-9);
+    }
+
+    @Test
+    public void test_02_keptInSync() {
+        SessionUtil session = new SessionUtil();
+        session.addContract(contract(1, 10.0f, 12, 12, 4));
+        ContractColumns columns = session.getColumns();
+        assertSame(session.getColumns(), columns);
+        assertEquals(columns.summarize().yearly(), 120.0, 1e-9);
+
+        session.updateContract(1, "cycle", "1");
+        session.addContract(contract(2, 5.0f, 1, 12, 4));
+        assertNotSame(session.getColumns(), columns);
+        assertEquals(session.getColumns().size(), 2);
+        assertEquals(session.getColumns().summarize().yearly(), 15.0, 1e-9);
+    }
+}
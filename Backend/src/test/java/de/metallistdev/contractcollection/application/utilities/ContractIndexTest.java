@@ -0,0 +1,65 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class ContractIndexTest {
+
+    private Contract contract(int id, String category) {
+        return new Contract(id, category, "name", 100.0f, 12, "12345", "67890", "2022-01-01",
+                12, 4, "test description", "/path/to/stuff");
+    }
+
+    @Test
+    public void test_00_maintainedIncrementally() {
+        ContractRepository repository = new ContractRepository();
+        repository.add(contract(1, "insurance"));
+
+        // existing contracts are replayed on registration
+        ContractIndex index = new ContractIndex(Contract::getCategory);
+        repository.addListener(index);
+        assertEquals(index.lookup("insurance").size(), 1);
+
+        repository.add(contract(3, "living"));
+        repository.add(contract(2, "insurance"));
+        List<Contract> insurances = index.lookup("insurance");
+        assertEquals(insurances.size(), 2);
+        assertEquals(insurances.get(0).getId(), 1);
+        assertEquals(insurances.get(1).getId(), 2);
+
+        repository.update(2, contract -> contract.setCategory("living"));
+        assertEquals(index.lookup("insurance").size(), 1);
+        assertEquals(index.lookup("living").size(), 2);
+        assertEquals(index.lookup("living").get(0).getCategory(), "living");
+
+        repository.remove(1);
+        assertTrue(index.lookup("insurance").isEmpty());
+        assertEquals(index.size(), 1);
+
+        repository.clear();
+        assertTrue(index.lookup("living").isEmpty());
+        assertTrue(index.lookup(null).isEmpty());
+    }
+
+    @Test
+    public void test_01_sessionLookups() {
+        SessionUtil session = new SessionUtil();
+        session.addContract(contract(1, "insurance"));
+        session.addContract(contract(2, "living"));
+        session.updateContract(2, "contractNr", "11111");
+        session.updateContract(2, "customerNr", "22222");
+
+        assertEquals(session.getContractsByCategory("living").get(0).getId(), 2);
+        assertEquals(session.getContractsByContractNr("67890").get(0).getId(), 1);
+        assertEquals(session.getContractsByContractNr("11111").get(0).getId(), 2);
+        assertEquals(session.getContractsByCustomerNr("12345").size(), 1);
+        assertEquals(session.getContractsByCustomerNr("22222").size(), 1);
+        assertTrue(session.getContractsByCategory("unknown").isEmpty());
+    }
+}
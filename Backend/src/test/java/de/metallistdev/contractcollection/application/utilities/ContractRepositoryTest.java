@@ -0,0 +1,181 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class ContractRepositoryTest {
+
+    private Contract contract(int id, String name) {
+        return new Contract(id, "insurance", name, 100.0f, 12, "12345", "67890", "2022-01-01",
+                12, 4, "test description", "/path/to/stuff");
+    }
+
+    @Test
+    public void test_00_addAndGet() {
+        ContractRepository repository = new ContractRepository();
+        Contract first = contract(5, "first");
+        Contract second = contract(2, "second");
+
+        assertTrue(repository.add(first));
+        assertTrue(repository.add(second));
+        assertFalse(repository.add(null));
+
+        assertEquals(repository.size(), 2);
+        assertSame(repository.get(5), first);
+        assertSame(repository.get(2), second);
+        assertNull(repository.get(3));
+        assertTrue(repository.contains(2));
+    }
+
+    @Test
+    public void test_01_idCollision() {
+        ContractRepository repository = new ContractRepository();
+        repository.add(contract(5, "first"));
+        Contract duplicate = contract(5, "duplicate");
+        Contract withoutId = contract(0, "without id");
+
+        assertTrue(repository.add(duplicate));
+        assertTrue(repository.add(withoutId));
+
+        assertEquals(duplicate.getId(), 6);
+        assertEquals(withoutId.getId(), 7);
+        assertEquals(repository.get(5).getName(), "first");
+        assertEquals(repository.size(), 3);
+    }
+
+    @Test
+    public void test_02_removeAndReplace() {
+        ContractRepository repository = new ContractRepository();
+        Contract first = contract(1, "first");
+        repository.add(first);
+        repository.add(contract(2, "second"));
+
+        assertFalse(repository.remove(contract(1, "other object")));
+        assertTrue(repository.remove(first));
+        assertNull(repository.remove(1));
+        assertNotNull(repository.remove(2));
+        assertEquals(repository.size(), 0);
+
+        repository.add(contract(3, "third"));
+        assertNull(repository.replace(contract(4, "missing")));
+        assertEquals(repository.replace(contract(3, "replaced")).getName(), "third");
+        assertEquals(repository.get(3).getName(), "replaced");
+    }
+
+    @Test
+    public void test_03_idOrder() {
+        ContractRepository repository = new ContractRepository();
+        repository.add(contract(3, "a"));
+        repository.add(contract(1, "b"));
+        repository.add(contract(2, "c"));
+
+        List<Contract> values = repository.values();
+        assertEquals(values.get(0).getId(), 1);
+        assertEquals(values.get(1).getId(), 2);
+        assertEquals(values.get(2).getId(), 3);
+
+        int count = 0;
+        for (Contract ignored : repository) count++;
+        assertEquals(count, 3);
+    }
+
+    @Test
+    public void test_04_updateCopiesContract() {
+        ContractRepository repository = new ContractRepository();
+        Contract original = contract(1, "original");
+        repository.add(original);
+        List<Contract> before = repository.values();
+
+        Contract updated = repository.update(1, contract -> contract.setName("updated"));
+
+        assertNotSame(updated, original);
+        assertEquals(original.getName(), "original");
+        assertSame(before.get(0), original);
+        assertSame(repository.get(1), updated);
+        assertEquals(repository.values().get(0).getName(), "updated");
+        assertNull(repository.update(2, contract -> contract.setName("missing")));
+        assertThrows(UnsupportedOperationException.class, () -> before.add(original));
+    }
+
+    @Test
+    public void test_05_concurrentAccess() {
+        ContractRepository repository = new ContractRepository();
+        IntStream.rangeClosed(1, 100).forEach(i -> repository.add(contract(i, "initial")));
+        long version = repository.getVersion();
+
+        // readers iterate snapshots while writers add, update and remove
+        IntStream.range(0, 20_000).parallel().forEach(i -> {
+            switch (i % 4) {
+                case 0 -> repository.add(contract(0, "added"));
+                case 1 -> repository.update(i % 100 + 1, contract -> contract.setName("updated"));
+                case 2 -> repository.remove(100 + i / 4);
+                default -> {
+                    int count = 0;
+                    for (Contract ignored : repository) count++;
+                    assertTrue(count >= 0);
+                }
+            }
+        });
+
+        Set<Integer> ids = new HashSet<>();
+        for (Contract contract : repository) assertTrue(ids.add(contract.getId()));
+        assertEquals(repository.size(), ids.size());
+        assertEquals(repository.values().size(), repository.size());
+        assertTrue(repository.getVersion() > version);
+    }
+
+    @Test
+    public void test_06_page() {
+        ContractRepository repository = new ContractRepository();
+        IntStream.rangeClosed(1, 10).forEach(i -> repository.add(contract(i, "contract " + i)));
+
+        List<Contract> first = repository.page(0, 4);
+        assertEquals(first.size(), 4);
+        assertEquals(first.get(3).getId(), 4);
+
+        // the cursor stays valid, even if its contract got removed in the meantime
+        repository.remove(4);
+        List<Contract> second = repository.page(4, 4);
+        assertEquals(second.get(0).getId(), 5);
+        assertEquals(second.get(3).getId(), 8);
+
+        assertEquals(repository.page(8, 4).size(), 2);
+        assertTrue(repository.page(10, 4).isEmpty());
+    }
+
+    @Test
+    public void test_07_versions() {
+        ContractRepository repository = new ContractRepository();
+        repository.add(contract(1, "first"));
+        repository.add(contract(2, "second"));
+        long first = repository.getVersion(1);
+        long second = repository.getVersion(2);
+        assertTrue(first > 0 && second > first);
+        assertEquals(repository.getVersion(), second);
+
+        // a change of one contract doesn't touch the version of the others
+        repository.update(1, contract -> contract.setName("changed"));
+        assertTrue(repository.getVersion(1) > second);
+        assertEquals(repository.getVersion(2), second);
+        assertEquals(repository.getVersion(), repository.getVersion(1));
+
+        repository.remove(2);
+        assertEquals(repository.getVersion(2), 0);
+        assertTrue(repository.getVersion() > repository.getVersion(1));
+
+        // a re-added contract never gets a version, which was handed out before
+        repository.add(contract(2, "second"));
+        assertTrue(repository.getVersion(2) > second);
+        repository.clear();
+        assertEquals(repository.getVersion(1), 0);
+    }
+}
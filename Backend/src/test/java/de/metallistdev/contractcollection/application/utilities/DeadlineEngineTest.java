@@ -0,0 +1,103 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class DeadlineEngineTest {
+
+    private Contract contract(int id, String startDate, int contractPeriod, int periodOfNotice) {
+        return new Contract(id, "insurance", "name", 100.0f, 12, "12345", "67890", startDate,
+                contractPeriod, periodOfNotice, "test description", "/path/to/stuff");
+    }
+
+    /** mutable clock, which can be moved forward during a test */
+    private static class TestClock extends Clock {
+        private Instant instant;
+
+        TestClock(LocalDate date) {
+            set(date);
+        }
+
+        void set(LocalDate date) {
+            instant = date.atStartOfDay().toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    @Test
+    public void test_00_nextDeadline() {
+        TestClock clock = new TestClock(LocalDate.of(2024, 3, 1));
+        ContractRepository repository = new ContractRepository();
+        DeadlineEngine engine = new DeadlineEngine(clock);
+        repository.addListener(engine);
+
+        // yearly contract since 2022-01-01 with 4 weeks notice: period ends 2025-01-01, deadline 2024-12-04
+        repository.add(contract(1, "2022-01-01", 12, 4));
+        // monthly contract with 2 weeks notice: period ends 2024-03-15, deadline is today
+        repository.add(contract(2, "2023-01-15", 1, 2));
+        // not scheduled
+        repository.add(contract(3, "", 12, 4));
+        repository.add(contract(4, "2022-01-01", 0, 4));
+        assertEquals(engine.size(), 2);
+
+        List<DeadlineEngine.Deadline> deadlines = engine.upcoming(Period.ofDays(30));
+        assertEquals(deadlines.size(), 1);
+        assertEquals(deadlines.get(0).contract().getId(), 2);
+        assertEquals(deadlines.get(0).deadline(), LocalDate.of(2024, 3, 1));
+        assertEquals(deadlines.get(0).periodEnd(), LocalDate.of(2024, 3, 15));
+
+        deadlines = engine.upcoming(Period.ofYears(1));
+        assertEquals(deadlines.size(), 2);
+        assertEquals(deadlines.get(1).deadline(), LocalDate.of(2024, 12, 4));
+        assertEquals(deadlines.get(1).periodEnd(), LocalDate.of(2025, 1, 1));
+    }
+
+    @Test
+    public void test_01_incrementalUpdates() {
+        TestClock clock = new TestClock(LocalDate.of(2024, 3, 1));
+        ContractRepository repository = new ContractRepository();
+        DeadlineEngine engine = new DeadlineEngine(clock);
+        repository.addListener(engine);
+        repository.add(contract(1, "2022-01-01", 12, 4));
+
+        repository.update(1, contract -> contract.setStartDate("2022-04-01"));
+        List<DeadlineEngine.Deadline> deadlines = engine.upcoming(Period.ofDays(30));
+        assertEquals(deadlines.size(), 1);
+        assertEquals(deadlines.get(0).deadline(), LocalDate.of(2024, 3, 4));
+
+        // passed deadlines move on to the next period
+        clock.set(LocalDate.of(2024, 3, 5));
+        assertTrue(engine.upcoming(Period.ofDays(30)).isEmpty());
+        assertEquals(engine.upcoming(Period.ofYears(1)).get(0).deadline(), LocalDate.of(2025, 3, 4));
+
+        repository.remove(1);
+        assertTrue(engine.upcoming(Period.ofYears(10)).isEmpty());
+        assertEquals(engine.size(), 0);
+    }
+}
@@ -6,6 +6,13 @@ import org.testng.annotations.Test;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.SecureRandom;
 import java.util.Arrays;
 
@@ -80,4 +87,66 @@ public class EncryptionUtilTest {
         assertNotEquals(decryptedText, "");
         assertEquals(decryptedText, plaintext);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test_04_chunkedStream() throws Exception {
+        SecretKey key = EncryptionUtil.generateKeyFromPassword(password, EncryptionUtil.generateSalt(), 1000, 256);
+        int chunkSize = 1000;
+        Path file = Files.createTempFile("chunks", ".bin");
+        try {
+            // written in pieces, which don't line up with the chunks; the last length fills its chunk exactly
+            for (int length : new int[] {0, 999, 25_555, 25_000}) {
+                byte[] plaintext = new byte[length];
+                new SecureRandom().nextBytes(plaintext);
+                byte[] iv = EncryptionUtil.generateGCMSpecs().getIV();
+                int count = EncryptionUtil.chunkCount(length, chunkSize);
+
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    try (OutputStream stream = EncryptionUtil.newChunkedEncryptingStream(channel, 0, key, iv,
+                            chunkSize, count)) {
+                        for (int offset = 0; offset < length; offset += 777) {
+                            stream.write(plaintext, offset, Math.min(777, length - offset));
+                        }
+                    }
+                }
+                assertEquals(Files.size(file), length + (long) count * EncryptionUtil.getGCM_TAG_LENGTH());
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                     InputStream stream = EncryptionUtil.newChunkedDecryptingStream(channel, 0, channel.size(), key,
+                             iv, chunkSize, count)) {
+                    // read in pieces as well, which don't line up with the chunks either
+                    byte[] decrypted = new byte[length];
+                    int offset = 0;
+                    int read;
+                    while (offset < length
+                            && (read = stream.read(decrypted, offset, Math.min(333, length - offset))) > 0)
+                        offset += read;
+                    assertEquals(offset, length);
+                    assertEquals(decrypted, plaintext);
+                    assertEquals(stream.read(), -1);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void test_05_chunkedStreamCount() throws Exception {
+        SecretKey key = EncryptionUtil.generateKeyFromPassword(password, EncryptionUtil.generateSalt(), 1000, 256);
+        byte[] iv = EncryptionUtil.generateGCMSpecs().getIV();
+        byte[] plaintext = new byte[2500];
+        Path file = Files.createTempFile("chunks", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // the plaintext has to fill exactly the announced number of chunks, which every chunk authenticates
+            OutputStream shorter = EncryptionUtil.newChunkedEncryptingStream(channel, 0, key, iv, 1000, 4);
+            shorter.write(plaintext);
+            assertThrows(IOException.class, shorter::close);
+
+            OutputStream longer = EncryptionUtil.newChunkedEncryptingStream(channel, 0, key, iv, 1000, 2);
+            assertThrows(IOException.class, () -> longer.write(plaintext));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
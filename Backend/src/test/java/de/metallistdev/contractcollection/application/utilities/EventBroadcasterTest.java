@@ -0,0 +1,141 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class EventBroadcasterTest {
+
+    /**
+     * emitter, which records the events instead of writing them to a response
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch release;
+        volatile boolean completed;
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StringBuilder event = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) event.append(data.getData());
+            events.add(event.toString());
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+
+    private Contract contract(int id) {
+        return new Contract(id, "living", "rent", 250, 12, "98741", "123650", "2022-07-01", 1, 8, "", "");
+    }
+
+    private void await(RecordingEmitter emitter, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && emitter.events.size() < count; i++) Thread.sleep(20);
+    }
+
+    @Test
+    public void test_00_pushesChanges() throws InterruptedException {
+        ContractRepository repository = new ContractRepository();
+        repository.add(contract(1));
+        EventBroadcaster broadcaster = new EventBroadcaster(repository::getVersion, 16, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        repository.addListener(broadcaster);
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        broadcaster.subscribe(emitter);
+        assertEquals(broadcaster.getSubscriberCount(), 1);
+
+        repository.add(contract(2));
+        repository.update(1, contract -> contract.setName("changed"));
+        repository.remove(2);
+        await(emitter, 3);
+
+        // events are pushed in the order of the changes, with the version as id
+        assertEquals(emitter.events.size(), 3);
+        assertTrue(emitter.events.get(0).startsWith("id:2\n"));
+        assertTrue(emitter.events.get(0).contains("\"op\":\"add\""));
+        assertTrue(emitter.events.get(1).startsWith("id:3\n"));
+        assertTrue(emitter.events.get(1).contains("\"name\":\"changed\""));
+        assertTrue(emitter.events.get(2).contains("\"op\":\"delete\",\"version\":4,\"id\":2"));
+
+        broadcaster.close();
+        assertTrue(emitter.completed);
+        assertEquals(broadcaster.getSubscriberCount(), 0);
+    }
+
+    @Test
+    public void test_01_dropsSlowSubscribers() throws InterruptedException {
+        ContractRepository repository = new ContractRepository();
+        EventBroadcaster broadcaster = new EventBroadcaster(repository::getVersion, 4, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        repository.addListener(broadcaster);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(release);
+        RecordingEmitter fast = new RecordingEmitter(new CountDownLatch(0));
+        broadcaster.subscribe(slow);
+        broadcaster.subscribe(fast);
+
+        // the slow client blocks its sender, so its queue overflows; changes never wait for it
+        for (int i = 1; i <= 20; i++) {
+            repository.add(contract(i));
+            Thread.sleep(5);
+        }
+        assertTrue(slow.completed);
+        assertEquals(broadcaster.getSubscriberCount(), 1);
+        release.countDown();
+
+        await(fast, 20);
+        assertEquals(fast.events.size(), 20);
+        assertFalse(fast.completed);
+        broadcaster.close();
+    }
+
+    @Test
+    public void test_02_dropsStalledSubscribers() throws InterruptedException {
+        ContractRepository repository = new ContractRepository();
+        EventBroadcaster broadcaster = new EventBroadcaster(repository::getVersion, 64, Duration.ofMinutes(1),
+                Duration.ofMillis(100));
+        repository.addListener(broadcaster);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter stalled1 = new RecordingEmitter(release);
+        RecordingEmitter stalled2 = new RecordingEmitter(release);
+        RecordingEmitter fast = new RecordingEmitter(new CountDownLatch(0));
+        broadcaster.subscribe(stalled1);
+        broadcaster.subscribe(stalled2);
+        broadcaster.subscribe(fast);
+
+        // two clients, which never accept an event, don't hold back the third one
+        for (int i = 1; i <= 5; i++) repository.add(contract(i));
+        await(fast, 5);
+        assertEquals(fast.events.size(), 5);
+
+        // their sends exceed the send timeout, so they are dropped although their queues never filled up
+        for (int i = 0; i < 100 && broadcaster.getSubscriberCount() > 1; i++) Thread.sleep(20);
+        assertEquals(broadcaster.getSubscriberCount(), 1);
+        release.countDown();
+        for (int i = 0; i < 100 && !(stalled1.completed && stalled2.completed); i++) Thread.sleep(20);
+        assertTrue(stalled1.completed);
+        assertTrue(stalled2.completed);
+        assertFalse(fast.completed);
+        broadcaster.close();
+    }
+}
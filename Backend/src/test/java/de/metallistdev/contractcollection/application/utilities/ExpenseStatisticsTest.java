@@ -0,0 +1,66 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import de.metallistdev.contractcollection.commons.Contract;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class ExpenseStatisticsTest {
+
+    private Contract contract(int id, String category, float expenses, int cycle) {
+        return new Contract(id, category, "name", expenses, cycle, "12345", "67890", "2022-01-01",
+                12, 4, "test description", "/path/to/stuff");
+    }
+
+    @Test
+    public void test_00_runningTotals() {
+        ContractRepository repository = new ContractRepository();
+        ExpenseStatistics statistics = new ExpenseStatistics();
+        repository.addListener(statistics);
+
+        repository.add(contract(1, "insurance", 9.99f, 12));
+        repository.add(contract(2, "insurance", 120.0f, 1));
+        repository.add(contract(3, "living", 250.0f, 12));
+
+        assertEquals(statistics.getTotal().count(), 3);
+        assertEquals(statistics.getTotal().getYearly(), 3239.88);
+        assertEquals(statistics.getTotal().getMonthly(), 269.99);
+
+        Map<String, ExpenseStatistics.Totals> categories = statistics.getCategories();
+        assertEquals(categories.get("insurance").count(), 2);
+        assertEquals(categories.get("insurance").getYearly(), 239.88);
+        assertEquals(categories.get("living").getMonthly(), 250.0);
+
+        repository.update(2, contract -> contract.setCategory("living"));
+        repository.update(3, contract -> contract.setCycle(1));
+        assertEquals(statistics.getCategories().get("insurance").count(), 1);
+        assertEquals(statistics.getCategories().get("living").getYearly(), 370.0);
+        assertEquals(statistics.getTotal().getYearly(), 489.88);
+
+        repository.remove(1);
+        assertNull(statistics.getCategories().get("insurance"));
+        assertEquals(statistics.getTotal().count(), 2);
+
+        repository.clear();
+        assertEquals(statistics.getTotal(), ExpenseStatistics.Totals.EMPTY);
+        assertTrue(statistics.getCategories().isEmpty());
+    }
+
+    @Test
+    public void test_01_noDrift() {
+        ContractRepository repository = new ContractRepository();
+        ExpenseStatistics statistics = new ExpenseStatistics();
+        repository.addListener(statistics);
+
+        repository.add(contract(1, "insurance", 0.1f, 1));
+        for (int i = 0; i < 100_000; i++) {
+            repository.add(contract(2, "insurance", 0.07f, 12));
+            repository.remove(2);
+        }
+        assertEquals(statistics.getTotal().yearlyCents(), 10);
+    }
+}
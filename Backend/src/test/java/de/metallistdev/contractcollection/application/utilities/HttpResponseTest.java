@@ -0,0 +1,67 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+import de.metallistdev.contractcollection.commons.Contract;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class HttpResponseTest {
+
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+
+    private final Contract contract = new Contract(7, "insurance", "test insurance", 100.5f, 12, "12345", "67890",
+            "2022-01-01", 12, 4, "test description", "/path/to/stuff");
+
+    private JsonNode reparse(JsonNode node) {
+        return mapper.readTree(mapper.writeValueAsString(node));
+    }
+
+    @Test
+    public void test_00_compiledTemplates() {
+        for (ReasonCodes reasonCode : ReasonCodes.values()) {
+            JsonNode response = HttpResponse.requestSingleContract(reasonCode, contract);
+            assertEquals(response.get("head").get("reasonCode").asString(), reasonCode.getCodenumber());
+            assertEquals(response.get("head").get("message").asString(), reasonCode.getDescription());
+            assertEquals(response.get("body").get("name").asString(), "test insurance");
+            assertEquals(response.get("body").get("expenses").floatValue(), 100.5f);
+        }
+
+        JsonNode deleted = HttpResponse.requestDeleteContract(ReasonCodes.RC_DELETE_SUCCESS);
+        assertTrue(deleted.get("body").isEmpty());
+        assertFalse(deleted.toString().contains("#"));
+
+        // responses must not share state
+        ((ObjectNode) deleted.get("head")).put("message", "changed");
+        assertEquals(HttpResponse.requestDeleteContract(ReasonCodes.RC_DELETE_SUCCESS).get("head").get("message")
+                .asString(), ReasonCodes.RC_DELETE_SUCCESS.getDescription());
+        assertNull(HttpResponse.requestShutdown(ReasonCodes.RC_SHUTDOWN_SUCCESS).get("body"));
+    }
+
+    @Test
+    public void test_01_streamedResponses() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.createGenerator(output)) {
+            HttpResponse.writeAllContracts(generator, ReasonCodes.RC_GENERAL_SUCCESS, List.of(contract, contract));
+        }
+        // compared as parsed trees, since the property order may differ
+        assertTrue(mapper.readTree(output.toByteArray()).equals(reparse(
+                HttpResponse.requestGetAllContracts(ReasonCodes.RC_GENERAL_SUCCESS, List.of(contract, contract)))));
+
+        output.reset();
+        try (JsonGenerator generator = mapper.createGenerator(output)) {
+            HttpResponse.writeSingleContract(generator, ReasonCodes.RC_UPDATE_SUCCESS, contract);
+        }
+        assertTrue(mapper.readTree(output.toByteArray()).equals(reparse(
+                HttpResponse.requestSingleContract(ReasonCodes.RC_UPDATE_SUCCESS, contract))));
+    }
+}
@@ -0,0 +1,57 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class IdSequenceTest {
+
+    @Test
+    public void test_00_monotonic() {
+        IdSequence sequence = new IdSequence(false);
+        assertEquals(sequence.next(), 1);
+        assertEquals(sequence.next(), 2);
+
+        sequence.observe(10);
+        assertEquals(sequence.next(), 11);
+        sequence.observe(5);
+        assertEquals(sequence.next(), 12);
+
+        sequence.release(11);
+        assertEquals(sequence.next(), 13);
+
+        sequence.reset();
+        assertEquals(sequence.next(), 1);
+    }
+
+    @Test
+    public void test_01_reuseFreedIds() {
+        IdSequence sequence = new IdSequence(true);
+        sequence.observe(10);
+        sequence.release(7);
+        sequence.release(3);
+        sequence.release(20);
+
+        assertEquals(sequence.next(), 3);
+        sequence.observe(7);
+        assertEquals(sequence.next(), 11);
+        assertEquals(sequence.getHighest(), 11);
+    }
+
+    @Test
+    public void test_02_concurrentAllocation() {
+        IdSequence sequence = new IdSequence(false);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, 100_000).parallel().forEach(i -> ids.add(sequence.next()));
+
+        assertEquals(ids.size(), 100_000);
+        assertEquals(sequence.getHighest(), 100_000);
+    }
+}
@@ -1,17 +1,34 @@
 package de.metallistdev.contractcollection.application.utilities;
 
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ObjectNode;
 import de.metallistdev.contractcollection.commons.Contract;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.prefs.Preferences;
+import java.util.stream.Stream;
 
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
@@ -20,9 +37,23 @@ import static org.testng.Assert.*;
 public class SessionUtilTest {
     private SessionUtil session;
 
+    /** copies of the fixtures; saving migrates a vault to the binary format, so the originals are only read */
+    private Path fixtures;
+
     @BeforeClass
-    public void beforeClass() {
+    public void beforeClass() throws IOException {
         this.session = spy(new SessionUtil());
+        this.fixtures = Files.createTempDirectory("fixtures");
+        for (String name : List.of("testExport.txt", "testExportedFile.txt", "testCorruptedFile.txt")) {
+            Files.copy(Path.of("src/test/resources", name), fixtures.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @AfterClass
+    public void afterClass() throws IOException {
+        try (Stream<Path> files = Files.walk(fixtures)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(file);
+        }
     }
 
     @Test
@@ -65,13 +96,19 @@ public class SessionUtilTest {
                 session.updateContract(1000, "contractNr", "159753").getContractNr(),
                 "159753"
         );
+
+        // single attributes follow the same rules as new contracts, on every path
+        expectThrows(IllegalArgumentException.class, () -> session.updateContract(1000, "cycle", "0"));
+        expectThrows(IllegalArgumentException.class, () -> session.updateContract(1000, "expenses", "NaN"));
+        assertFalse(session.applyBatch(List.of(BatchOperation.update(1000, "cycle", "0"))).get(0).isSuccess());
+        assertEquals(session.getSingleContract(1000).getCycle(), 12);
     }
 
     @Test
     public void test_05_writeFileTest() {
         this.test_00_AddContract();
 
-        String filepath = new File("src/test/resources/testExportedFile.txt").getAbsolutePath();
+        String filepath = fixtures.resolve("testExportedFile.txt").toString();
         String password = "123superSecret!";
         Path path = Path.of(filepath);
         try {
@@ -86,9 +123,9 @@ public class SessionUtilTest {
 
     @Test
     public void test_06_loadFileTest() {
-        String filepath = new File("src/test/resources/testExportedFile.txt").getAbsolutePath();
+        String filepath = fixtures.resolve("testExportedFile.txt").toString();
         String falsepath = new File("src/resources/testExportedFile.txt").getAbsolutePath();
-        String corruptedFile = new File("src/test/resources/testCorruptedFile.txt").getAbsolutePath();
+        String corruptedFile = fixtures.resolve("testCorruptedFile.txt").toString();
         List<Contract> contracts = new ArrayList<>();
 
         // wrong file path
@@ -120,6 +157,10 @@ public class SessionUtilTest {
         session.removeAllContracts();
         contracts = session.loadFile(filepath, "123superSecret!");
         assertFalse(contracts.isEmpty());
+
+        // vaults in the legacy format are still readable
+        String legacyFile = fixtures.resolve("testExport.txt").toString();
+        assertFalse(new SessionUtil().loadFile(legacyFile, "123superSecret!").isEmpty());
     }
 
     @Test
@@ -129,15 +170,447 @@ public class SessionUtilTest {
 
     @Test
     public void test_08_PrepareShutdown() {
-        String filepath = new File("src/test/resources/testExport.txt").getAbsolutePath();
+        String filepath = fixtures.resolve("testExport.txt").toString();
 
         Preferences preferences = Preferences.userNodeForPackage(SessionUtil.class);
 
         String savepath = preferences.get("Filepath", "");
         preferences.put("Filepath", filepath);
 
-        assertTrue(session.prepareShutdown());
+        assertTrue(session.prepareShutdown().join());
 
         preferences.put("Filepath", savepath);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test_09_ReuseVaultKey() throws IOException {
+        Path first = Files.createTempFile("vault", ".ccv");
+        Path second = Files.createTempFile("vault", ".ccv");
+        try {
+            assertTrue(session.writeFile(first.toString(), "123superSecret!"));
+            assertTrue(session.writeFile(second.toString(), "123superSecret!"));
+
+            VaultFile firstVault = VaultFile.read(first);
+            VaultFile secondVault = VaultFile.read(second);
+            assertEquals(secondVault.getSalt(), firstVault.getSalt());
+            assertNotEquals(secondVault.getIv(), firstVault.getIv());
+
+            assertTrue(session.writeFile(second.toString(), "anotherSecret"));
+            assertNotEquals(VaultFile.read(second).getSalt(), firstVault.getSalt());
+        } finally {
+            Files.deleteIfExists(first);
+            Files.deleteIfExists(second);
+        }
+    }
+
+    @Test
+    public void test_10_ndjsonImportExport() {
+        SessionUtil source = new SessionUtil();
+        for (int i = 0; i < 25_000; i++) {
+            source.addContract(new Contract(0, "living", "rent " + i, 250, 12, "98741", String.valueOf(i),
+                    "2022-07-01", 1, 8, "rent for flat", "/home/user/example"));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(source.exportNdjson(output), 25_000);
+        String ndjson = output.toString(StandardCharsets.UTF_8);
+        assertEquals(ndjson.lines().count(), 25_000);
+
+        SessionUtil target = new SessionUtil();
+        assertEquals(target.importNdjson(new ByteArrayInputStream(output.toByteArray())), 25_000);
+        assertEquals(target.getSingleContract(25_000).getContractNr(), "24999");
+        assertEquals(target.getContracts().size(), 25_000);
+
+        // unknown and missing attributes are tolerated, invalid lines abort the import
+        String partial = "{\"id\": 3, \"name\": \"partial\", \"unknown\": true}\n{\"name\": ";
+        SessionUtil invalid = new SessionUtil();
+        assertThrows(IllegalArgumentException.class,
+                () -> invalid.importNdjson(new ByteArrayInputStream(partial.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(invalid.getSingleContract(3).getName(), "partial");
+        assertEquals(invalid.getSingleContract(3).getCategory(), "");
+    }
+
+    @Test
+    public void test_11_journalReplay() throws Exception {
+        Preferences preferences = Preferences.userNodeForPackage(SessionUtil.class);
+        String savepath = preferences.get("Filepath", "");
+        Path directory = Files.createTempDirectory("vault");
+        Path vault = directory.resolve("contracts.ccv");
+        String password = "123superSecret!";
+        try {
+            SessionUtil writer = new SessionUtil(false, true, 1024 * 1024);
+            for (int i = 1; i <= 3; i++) {
+                writer.addContract(new Contract(i, "living", "rent " + i, 250, 12, "98741", String.valueOf(i),
+                        "2022-07-01", 1, 8, "rent for flat", "/home/user/example"));
+            }
+            assertTrue(writer.writeFile(vault.toString(), password));
+            long snapshotSize = Files.size(vault);
+
+            // changes after the save only append to the journal
+            writer.updateContract(1, "name", "changed");
+            writer.removeContract(2);
+            writer.addContract(new Contract(0, "insurance", "car", 30, 12, "1", "2", "2023-01-01", 12, 4, "", ""));
+            assertEquals(Files.size(vault), snapshotSize);
+            assertTrue(Files.size(ChangeJournal.pathOf(vault)) > 0);
+
+            SessionUtil reader = new SessionUtil(false, true, 1024 * 1024);
+            List<Contract> contracts = reader.loadFile(vault.toString(), password);
+            assertEquals(contracts.stream().map(Contract::getId).toList(), List.of(1, 3, 4));
+            assertEquals(reader.getSingleContract(1).getName(), "changed");
+            assertEquals(reader.getSingleContract(4).getName(), "car");
+
+            // a journal exceeding the threshold gets folded into a new snapshot in the background
+            SessionUtil compacting = new SessionUtil(false, true, 1);
+            compacting.loadFile(vault.toString(), password);
+            compacting.removeContract(3);
+            byte[] iv = VaultFile.read(vault).getIv();
+            for (int i = 0; i < 100 && Arrays.equals(VaultFile.read(vault).getIv(), iv); i++) {
+                Thread.sleep(50);
+            }
+            assertNotEquals(VaultFile.read(vault).getIv(), iv);
+
+            SessionUtil compacted = new SessionUtil(false, true, 1024 * 1024);
+            assertEquals(compacted.loadFile(vault.toString(), password).stream().map(Contract::getId).toList(),
+                    List.of(1, 4));
+        } finally {
+            preferences.put("Filepath", savepath);
+            Files.deleteIfExists(ChangeJournal.pathOf(vault));
+            Files.deleteIfExists(ChangeJournal.nextPathOf(vault));
+            Files.deleteIfExists(vault);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void test_12_atomicSave() throws Exception {
+        Path directory = Files.createTempDirectory("vault");
+        Path vault = directory.resolve("contracts.ccv");
+        try {
+            assertTrue(session.saveFile(vault.toString(), "123superSecret!").get(10, TimeUnit.SECONDS));
+            byte[] iv = VaultFile.read(vault).getIv();
+            assertTrue(session.saveFile(vault.toString(), "123superSecret!").get(10, TimeUnit.SECONDS));
+            assertNotEquals(VaultFile.read(vault).getIv(), iv);
+
+            // only the vault is left, no temporary files
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(files.toList(), List.of(vault));
+            }
+
+            // a failed save completes exceptionally
+            Path missing = directory.resolve("missing").resolve("contracts.ccv");
+            ExecutionException failure = expectThrows(ExecutionException.class,
+                    () -> session.saveFile(missing.toString(), "123superSecret!").get(10, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+        } finally {
+            Files.deleteIfExists(vault);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void test_13_bulkImport() throws Exception {
+        Preferences preferences = Preferences.userNodeForPackage(SessionUtil.class);
+        String savepath = preferences.get("Filepath", "");
+        Path vault = Files.createTempFile("vault", ".ccv");
+        String password = "123superSecret!";
+        try {
+            // a vault with 20,000 contracts, one with a duplicate id, one without cycle and an incomplete one
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 1; i <= 20_000; i++) {
+                json.append(new Contract(i, "living", "rent " + i, 250, 12, "98741", String.valueOf(i), "2022-07-01",
+                        1, 8, "rent for flat", "/home/user/example").toJson()).append(',');
+            }
+            json.append(new Contract(5, "living", "duplicate", 250, 12, "98741", "5", "2022-07-01", 1, 8, "", "")
+                    .toJson()).append(',');
+            json.append(new Contract(20_001, "living", "no cycle", 250, 0, "98741", "0", "2022-07-01", 1, 8, "", "")
+                    .toJson()).append(',');
+            json.append("{\"id\": 20002, \"name\": \"incomplete\"}]");
+            byte[] plaintext = json.toString().getBytes(StandardCharsets.UTF_8);
+
+            VaultKey key = VaultKey.derive(password);
+            byte[] iv = EncryptionUtil.generateGCMSpecs().getIV();
+            int chunkSize = EncryptionUtil.getCHUNK_SIZE();
+            try (FileChannel channel = FileChannel.open(vault, StandardOpenOption.WRITE)) {
+                new VaultFile(key.getIterations(), key.getKeySize(), key.getSalt(), iv, chunkSize,
+                        EncryptionUtil.chunkCount(plaintext.length, chunkSize)).writeHeader(channel);
+                try (OutputStream stream = EncryptionUtil.newChunkedEncryptingStream(channel, channel.position(),
+                        key.getSecretKey(), iv, chunkSize, EncryptionUtil.chunkCount(plaintext.length, chunkSize))) {
+                    stream.write(plaintext);
+                }
+            }
+
+            SessionUtil target = new SessionUtil();
+            List<Contract> contracts = target.loadFile(vault.toString(), password);
+            assertEquals(contracts.size(), 20_002);
+            assertEquals(target.getSingleContract(20_000).getName(), "rent 20000");
+            assertEquals(target.getSingleContract(20_001).getName(), "duplicate");
+            // only the incomplete one is skipped; one breaking the rules of new contracts is kept
+            assertEquals(target.getSingleContract(20_002).getName(), "no cycle");
+            assertEquals(target.getContractsByContractNr("5").size(), 2);
+        } finally {
+            preferences.put("Filepath", savepath);
+            Files.deleteIfExists(vault);
+        }
+    }
+
+    @Test
+    public void test_14_batch() {
+        SessionUtil batchSession = new SessionUtil();
+        for (int i = 1; i <= 3; i++) {
+            batchSession.addContract(new Contract(i, "living", "rent " + i, 250, 12, "98741", String.valueOf(i),
+                    "2022-07-01", 1, 8, "rent for flat", "/home/user/example"));
+        }
+        Contract car = new Contract(0, "insurance", "car", 30, 12, "1", "2", "2023-01-01", 12, 4, "", "");
+
+        List<BatchOperation.Result> results = batchSession.applyBatch(List.of(
+                BatchOperation.add(car),
+                BatchOperation.update(1, "expenses", "300"),
+                BatchOperation.delete(2)));
+        assertEquals(results.size(), 3);
+        assertTrue(results.stream().allMatch(BatchOperation.Result::isSuccess));
+        assertEquals(results.get(0).contract().getId(), 4);
+        assertEquals(batchSession.getSingleContract(1).getExpenses(), 300f);
+        assertNull(batchSession.getSingleContract(2));
+
+        // a failing operation rejects the ones before
+        long yearly = batchSession.getStatistics().getTotal().yearlyCents();
+        long version = batchSession.getVersion();
+        results = batchSession.applyBatch(List.of(
+                BatchOperation.delete(1),
+                BatchOperation.update(3, "name", "renamed"),
+                BatchOperation.add(new Contract(car)),
+                BatchOperation.update(3, "cycle", "twelve"),
+                BatchOperation.delete(4)));
+        assertEquals(results.size(), 4);
+        assertEquals(results.get(3).reasonCode(), ReasonCodes.RC_UPDATE_ERROR);
+        assertEquals(batchSession.getContracts().stream().map(Contract::getId).toList(), List.of(1, 3, 4));
+        assertEquals(batchSession.getSingleContract(1).getExpenses(), 300f);
+        assertEquals(batchSession.getSingleContract(3).getName(), "rent 3");
+        assertEquals(batchSession.getStatistics().getTotal().yearlyCents(), yearly);
+        assertEquals(batchSession.getContractsByCategory("insurance").size(), 1);
+
+        // nothing of the rejected batch was applied: no change got published and no id got used up
+        assertEquals(batchSession.getVersion(), version);
+        assertTrue(batchSession.getChanges(version).contracts().isEmpty());
+        Contract next = new Contract(car);
+        next.setId(0);
+        assertTrue(batchSession.addContract(next));
+        assertEquals(next.getId(), 5);
+
+        // later operations see the changes of the ones before
+        results = batchSession.applyBatch(List.of(
+                BatchOperation.delete(5),
+                BatchOperation.update(5, "name", "deleted before")));
+        assertEquals(results.get(1).reasonCode(), ReasonCodes.RC_UPDATE_ERROR);
+        assertEquals(batchSession.getSingleContract(5).getName(), "car");
+    }
+
+    @Test
+    public void test_15_mergePatch() {
+        SessionUtil patchSession = new SessionUtil();
+        patchSession.addContract(new Contract(1, "living", "rent", 250, 12, "98741", "1",
+                "2022-07-01", 1, 8, "rent for flat", "/home/user/example"));
+        ObjectMapper mapper = new ObjectMapper();
+
+        ObjectNode patch = mapper.createObjectNode()
+                .put("name", "new rent")
+                .put("expenses", 275.5)
+                .put("cycle", 1)
+                .put("periodOfNotice", 3)
+                .putNull("documentPath");
+        Contract patched = patchSession.patchContract(1, patch);
+        assertEquals(patched.getName(), "new rent");
+        assertEquals(patched.getExpenses(), 275.5f);
+        assertEquals(patched.getCycle(), 1);
+        assertEquals(patched.getPeriodOfNotice(), 3);
+        assertNull(patched.getDocumentPath());
+        assertEquals(patched.getCategory(), "living");
+        assertEquals(patchSession.getSingleContract(1), patched);
+
+        // a single invalid attribute rejects the whole patch
+        for (ObjectNode invalid : List.of(
+                mapper.createObjectNode().put("name", "ignored").put("expenses", "a lot"),
+                mapper.createObjectNode().put("name", "ignored").put("cycle", 0),
+                mapper.createObjectNode().put("name", "ignored").putNull("category"),
+                mapper.createObjectNode().put("name", "ignored").put("color", "red"),
+                mapper.createObjectNode().put("name", "ignored").put("id", 2))) {
+            assertThrows(IllegalArgumentException.class, () -> patchSession.patchContract(1, invalid));
+        }
+        assertEquals(patchSession.getSingleContract(1).getName(), "new rent");
+        assertNull(patchSession.patchContract(2, patch));
+    }
+
+    @Test
+    public void test_16_changes() {
+        SessionUtil changeSession = new SessionUtil(false, false, 0, false, Duration.ZERO, Duration.ZERO, 8);
+        for (int i = 1; i <= 3; i++) {
+            changeSession.addContract(new Contract(i, "living", "rent " + i, 250, 12, "98741", String.valueOf(i),
+                    "2022-07-01", 1, 8, "rent for flat", "/home/user/example"));
+        }
+        long version = changeSession.getVersion();
+
+        changeSession.updateContract(1, "name", "changed");
+        changeSession.removeContract(2);
+        ContractChanges changes = changeSession.getChanges(version);
+        assertFalse(changes.snapshot());
+        assertEquals(changes.version(), changeSession.getVersion());
+        assertEquals(changes.contracts().size(), 1);
+        assertEquals(changes.contracts().get(0).getName(), "changed");
+        assertEquals(changes.removed(), List.of(2));
+        assertTrue(changeSession.getChanges(changes.version()).contracts().isEmpty());
+
+        // once the log wrapped, the client gets all contracts
+        for (int i = 0; i < 8; i++) changeSession.updateContract(3, "expenses", String.valueOf(i));
+        changes = changeSession.getChanges(version);
+        assertTrue(changes.snapshot());
+        assertEquals(changes.contracts().size(), 2);
+        assertTrue(changes.removed().isEmpty());
+    }
+
+    @Test
+    public void test_17_journalMerge() throws Exception {
+        Preferences preferences = Preferences.userNodeForPackage(SessionUtil.class);
+        String savepath = preferences.get("Filepath", "");
+        Path directory = Files.createTempDirectory("vault");
+        Path vault = directory.resolve("contracts.ccv");
+        String password = "123superSecret!";
+        try {
+            SessionUtil writer = new SessionUtil(false, true, 1024 * 1024);
+            writer.addContract(new Contract(1, "living", "rent", 250, 12, "98741", "1",
+                    "2022-07-01", 1, 8, "rent for flat", "/home/user/example"));
+            assertTrue(writer.writeFile(vault.toString(), password));
+            writer.updateContract(1, "name", "changed");
+
+            // loaded into a session with other contracts, the journal is replayed before merging
+            SessionUtil merging = new SessionUtil(false, true, 1024 * 1024);
+            merging.addContract(new Contract(1, "insurance", "car", 30, 12, "1", "2", "2023-01-01", 12, 4, "", ""));
+            List<Contract> contracts = merging.loadFile(vault.toString(), password);
+            assertEquals(contracts.stream().map(Contract::getName).toList(), List.of("car", "changed"));
+
+            // a journal, which can't be replayed, is kept apart instead of being replaced by the next save
+            VaultFile snapshot = VaultFile.read(vault);
+            SecretKey key = EncryptionUtil.generateKeyFromPassword(password, snapshot.getSalt(),
+                    snapshot.getIterations(), snapshot.getKeySize());
+            try (ChangeJournal damaged = ChangeJournal.create(ChangeJournal.pathOf(vault), key, snapshot.getIv())) {
+                damaged.append("no change".getBytes(StandardCharsets.UTF_8));
+            }
+            SessionUtil reader = new SessionUtil(false, true, 1024 * 1024);
+            assertEquals(reader.loadFile(vault.toString(), password).get(0).getName(), "rent");
+            assertTrue(reader.writeFile(vault.toString(), password));
+            assertTrue(Files.exists(ChangeJournal.unreplayedPathOf(vault)));
+        } finally {
+            preferences.put("Filepath", savepath);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void test_18_importOverwrite() throws Exception {
+        Preferences preferences = Preferences.userNodeForPackage(SessionUtil.class);
+        String savepath = preferences.get("Filepath", "");
+        Path directory = Files.createTempDirectory("vault");
+        Path first = directory.resolve("first.ccv");
+        Path second = directory.resolve("second.ccv");
+        String password = "123superSecret!";
+        try {
+            SessionUtil writer = new SessionUtil(false, true, 1024 * 1024);
+            writer.addContract(new Contract(1, "living", "rent", 250, 12, "98741", "1", "2022-07-01", 1, 8, "", ""));
+            writer.addContract(new Contract(2, "insurance", "car", 30, 12, "1", "2", "2023-01-01", 12, 4, "", ""));
+            assertTrue(writer.writeFile(first.toString(), password));
+            SessionUtil secondWriter = new SessionUtil(false, true, 1024 * 1024);
+            secondWriter.addContract(new Contract(1, "living", "rent", 250, 12, "98741", "1", "2022-07-01", 1, 8, "", ""));
+            assertTrue(secondWriter.writeFile(second.toString(), password));
+
+            // switching vaults with overwrite doesn't record the clear in the journal of the previous vault
+            SessionUtil session = new SessionUtil(false, true, 1024 * 1024);
+            assertEquals(session.loadFile(first.toString(), password).size(), 2);
+            session.clearForImport();
+            assertEquals(session.loadFile(second.toString(), password).size(), 1);
+            session.clearForImport();
+            assertEquals(session.loadFile(first.toString(), password).size(), 2);
+
+            // neither does loading the same vault again
+            session.clearForImport();
+            assertEquals(session.loadFile(first.toString(), password).size(), 2);
+            assertEquals(new SessionUtil(false, true, 1024 * 1024).loadFile(first.toString(), password).size(), 2);
+        } finally {
+            preferences.put("Filepath", savepath);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void test_19_failedImport() throws Exception {
+        Preferences preferences = Preferences.userNodeForPackage(SessionUtil.class);
+        String savepath = preferences.get("Filepath", "");
+        Path directory = Files.createTempDirectory("vault");
+        Path vault = directory.resolve("contracts.ccv");
+        String password = "123superSecret!";
+        try {
+            SessionUtil writer = new SessionUtil(false);
+            writer.addContract(new Contract(1, "living", "rent", 250, 12, "98741", "1", "2022-07-01", 1, 8, "", ""));
+            writer.addContract(new Contract(2, "insurance", "car", 30, 12, "1", "2", "2023-01-01", 12, 4, "", ""));
+            assertTrue(writer.writeFile(vault.toString(), password));
+
+            // the session cleared for an import, which fails, isn't autosaved over the previous vault
+            SessionUtil session = new SessionUtil(false, false, 0, true, Duration.ofMillis(50), Duration.ofMillis(100),
+                    ChangeLog.DEFAULT_CAPACITY);
+            assertEquals(session.loadFile(vault.toString(), password).size(), 2);
+            session.clearForImport();
+            expectThrows(IllegalArgumentException.class, () -> session.loadFile(vault.toString(), "wrong password"));
+            Thread.sleep(300);
+            assertEquals(new SessionUtil(false).loadFile(vault.toString(), password).size(), 2);
+
+            // after a successful import, changes are autosaved to the imported vault again
+            session.loadFile(vault.toString(), password);
+            session.removeContract(2);
+            for (int i = 0; i < 100 && session.isDirty(); i++) Thread.sleep(20);
+            assertEquals(new SessionUtil(false).loadFile(vault.toString(), password).size(), 1);
+        } finally {
+            preferences.put("Filepath", savepath);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void test_20_autosaveWithJournal() throws Exception {
+        Preferences preferences = Preferences.userNodeForPackage(SessionUtil.class);
+        String savepath = preferences.get("Filepath", "");
+        Path directory = Files.createTempDirectory("vault");
+        Path vault = directory.resolve("contracts.ccv");
+        String password = "123superSecret!";
+        try {
+            SessionUtil writer = new SessionUtil(false);
+            writer.addContract(new Contract(1, "living", "rent", 250, 12, "98741", "1", "2022-07-01", 1, 8, "", ""));
+            assertTrue(writer.writeFile(vault.toString(), password));
+            byte[] iv = VaultFile.read(vault).getIv();
+
+            // the journal already holds the changes, so the autosave doesn't rewrite the vault
+            SessionUtil session = new SessionUtil(false, true, 1024 * 1024, true, Duration.ofMillis(50),
+                    Duration.ofMillis(100), ChangeLog.DEFAULT_CAPACITY);
+            session.loadFile(vault.toString(), password);
+            session.updateContract(1, "name", "changed");
+            assertTrue(session.isDirty());
+            for (int i = 0; i < 100 && session.isDirty(); i++) Thread.sleep(20);
+            assertFalse(session.isDirty());
+            assertEquals(VaultFile.read(vault).getIv(), iv);
+            assertEquals(new SessionUtil(false, true, 1024 * 1024).loadFile(vault.toString(), password).get(0).getName(),
+                    "changed");
+        } finally {
+            preferences.put("Filepath", savepath);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+}
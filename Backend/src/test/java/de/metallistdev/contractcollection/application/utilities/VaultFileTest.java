@@ -0,0 +1,142 @@
+package de.metallistdev.contractcollection.application.utilities;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testng.annotations.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.SecretKey;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest
+public class VaultFileTest {
+
+    @Test
+    public void test_00_writeReadBinary() throws IOException {
+        byte[] salt = new byte[16];
+        byte[] iv = new byte[12];
+        byte[] ciphertext = new byte[1024];
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(salt);
+        random.nextBytes(iv);
+        random.nextBytes(ciphertext);
+
+        Path path = Files.createTempFile("vault", ".ccv");
+        try {
+            // version 1 isn't written anymore, so the file is put together by hand
+            ByteBuffer content = ByteBuffer.allocate(4 + 2 + 4 + 2 + 1 + 16 + 1 + 12 + 1024);
+            content.putInt(VaultFile.MAGIC).putShort((short) VaultFile.VERSION_BINARY);
+            content.putInt(1000).putShort((short) 256);
+            content.put((byte) salt.length).put(salt).put((byte) iv.length).put(iv).put(ciphertext);
+            Files.write(path, content.array());
+
+            VaultFile vault = VaultFile.read(path);
+            assertEquals(vault.getVersion(), VaultFile.VERSION_BINARY);
+            assertTrue(vault.isOutdated());
+            assertFalse(vault.isChunked());
+            assertEquals(vault.getIterations(), 1000);
+            assertEquals(vault.getKeySize(), 256);
+            assertEquals(vault.getSalt(), salt);
+            assertEquals(vault.getIv(), iv);
+            assertEquals(vault.getCiphertext(), ciphertext);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void test_01_readLegacy() throws IOException {
+        Path path = new File("src/test/resources/testCorruptedFile.txt").toPath();
+
+        VaultFile vault = VaultFile.read(path);
+        assertEquals(vault.getVersion(), VaultFile.VERSION_LEGACY);
+        assertTrue(vault.isOutdated());
+        assertEquals(vault.getIv().length, 16);
+        assertEquals(vault.getSalt(), vault.getIv());
+        assertEquals(vault.getIterations(), EncryptionUtil.getITERATION_COUNT());
+        assertNotEquals(vault.getCiphertext().length, 0);
+    }
+
+    @Test
+    public void test_02_writeReadChunked() throws Exception {
+        byte[] salt = EncryptionUtil.generateSalt();
+        byte[] iv = EncryptionUtil.generateGCMSpecs().getIV();
+        SecretKey key = EncryptionUtil.generateKeyFromPassword("123superSecret!", salt, 1000, 256);
+        byte[] plaintext = new byte[100_000];
+        new SecureRandom().nextBytes(plaintext);
+        int chunkSize = 4096;
+        int count = EncryptionUtil.chunkCount(plaintext.length, chunkSize);
+        assertEquals(count, 25);
+
+        Path path = Files.createTempFile("vault", ".ccv");
+        try {
+            VaultFile written = new VaultFile(1000, 256, salt, iv, chunkSize, count);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                written.writeHeader(channel);
+                try (OutputStream stream = EncryptionUtil.newChunkedEncryptingStream(channel, channel.position(), key,
+                        iv, chunkSize, count)) {
+                    stream.write(plaintext);
+                }
+            }
+            long chunkedLength = plaintext.length + (long) count * EncryptionUtil.getGCM_TAG_LENGTH();
+
+            VaultFile vault = VaultFile.read(path);
+            assertEquals(vault.getVersion(), VaultFile.VERSION_CHUNKED);
+            assertFalse(vault.isOutdated());
+            assertEquals(vault.getChunkSize(), chunkSize);
+            assertEquals(vault.getChunkCount(), count);
+            assertEquals(vault.getChunksLength(), chunkedLength);
+            assertEquals(vault.getChunksPosition(), Files.size(path) - chunkedLength);
+            assertEquals(decrypt(path, key, count), plaintext);
+
+            // swapped chunks fail authentication
+            byte[] content = Files.readAllBytes(path);
+            int body = content.length - (int) chunkedLength;
+            int stride = chunkSize + EncryptionUtil.getGCM_TAG_LENGTH();
+            byte[] swapped = content.clone();
+            System.arraycopy(content, body, swapped, body + stride, stride);
+            System.arraycopy(content, body + stride, swapped, body, stride);
+            Files.write(path, swapped);
+            IOException reordered = expectThrows(IOException.class, () -> decrypt(path, key, count));
+            assertTrue(reordered.getCause() instanceof AEADBadTagException);
+
+            // dropping the last chunk is detected, even if the chunk count is adjusted
+            Files.write(path, Arrays.copyOf(content, content.length - (plaintext.length - (count - 1) * chunkSize)
+                    - EncryptionUtil.getGCM_TAG_LENGTH()));
+            assertThrows(IllegalBlockSizeException.class, () -> decrypt(path, key, count));
+            IOException truncated = expectThrows(IOException.class, () -> decrypt(path, key, count - 1));
+            assertTrue(truncated.getCause() instanceof AEADBadTagException);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * decrypts the chunks of a vault as a stream
+     * @param path  path of the vault
+     * @param key   key of the vault
+     * @param count number of chunks, which is expected
+     * @return      plaintext
+     */
+    private static byte[] decrypt(Path path, SecretKey key, int count) throws Exception {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            VaultFile vault = VaultFile.read(channel);
+            try (InputStream stream = EncryptionUtil.newChunkedDecryptingStream(channel, vault.getChunksPosition(),
+                    vault.getChunksLength(), key, vault.getIv(), vault.getChunkSize(), count)) {
+                return stream.readAllBytes();
+            }
+        }
+    }
+}
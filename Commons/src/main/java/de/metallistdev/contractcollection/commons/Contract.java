@@ -1,7 +1,7 @@
 package de.metallistdev.contractcollection.commons;
 
 import tools.jackson.databind.JsonNode;
-import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.JsonNodeFactory;
 import tools.jackson.databind.node.ObjectNode;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -67,18 +67,23 @@ public class Contract {
         this.documentPath = "";
     }
 
+    /**
+     * creates a copy of another contract
+     * @param other contract to be copied
+     */
+    public Contract(Contract other) {
+        this(other.id, other.category, other.name, other.expenses, other.cycle, other.customerNr, other.contractNr,
+                other.startDate, other.contractPeriod, other.periodOfNotice, other.description, other.documentPath);
+    }
+
     /**
      * creates a JSON from the instance
      * @return contract JSON
      */
     public JsonNode toJson() {
-        ObjectMapper mapper = new ObjectMapper();
-
-        ObjectNode node = mapper.createObjectNode();
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
 
         try {
-            log.debug("Used fallback method to assemble response for addContract.");
-
             node.put("id", this.id);
             node.put("category", this.category);
             node.put("name", this.name);
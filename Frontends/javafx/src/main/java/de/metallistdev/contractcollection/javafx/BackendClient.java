@@ -0,0 +1,203 @@
+package de.metallistdev.contractcollection.javafx;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import javafx.application.Platform;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * shared client for the requests to the backend
+ * <p>
+ * all views use the same pooled connections. Requests never block the calling thread: they run on a background
+ * executor, their response is parsed (and optionally converted) there as well and the result is handed to the JavaFX
+ * application thread, so callbacks of the returned futures may update the UI directly.
+ */
+public class BackendClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackendClient.class);
+
+    private static final String BACKEND_URL = "http://localhost:8080";
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    /** maximum duration of a request, unless it is known to take longer (see unlock) */
+    private static final Duration CALL_TIMEOUT = Duration.ofSeconds(30);
+
+    /** unlocking a vault derives its key (PBKDF2), which is slow on purpose */
+    private static final Duration UNLOCK_TIMEOUT = Duration.ofMinutes(2);
+
+    private static final BackendClient INSTANCE = new BackendClient();
+
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+
+    private final OkHttpClient client;
+
+    private final OkHttpClient unlockClient;
+
+    private BackendClient() {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "backend-client-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(new Dispatcher(executor))
+                .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                .connectTimeout(Duration.ofSeconds(5))
+                .readTimeout(CALL_TIMEOUT)
+                .writeTimeout(CALL_TIMEOUT)
+                .callTimeout(CALL_TIMEOUT)
+                .build();
+        // derived clients share the connections and the executor
+        this.unlockClient = client.newBuilder()
+                .readTimeout(UNLOCK_TIMEOUT)
+                .callTimeout(UNLOCK_TIMEOUT)
+                .build();
+    }
+
+    /**
+     * @return the client shared by all views
+     */
+    public static BackendClient getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the underlying http client, e.g. to derive clients for long-lived streams from it
+     */
+    public OkHttpClient getHttpClient() {
+        return client;
+    }
+
+    /**
+     * @param path path of the endpoint, e.g. "/all"
+     * @return     absolute url of the endpoint
+     */
+    public String url(String path) {
+        return BACKEND_URL + path;
+    }
+
+    /**
+     * @param path path of the endpoint
+     * @return     response json, completed on the application thread
+     */
+    public CompletableFuture<JsonNode> get(String path) {
+        return get(path, Function.identity());
+    }
+
+    /**
+     * @param path    path of the endpoint
+     * @param convert converts the response json; runs in the background, so it may do expensive work
+     * @return        converted response, completed on the application thread
+     */
+    public <T> CompletableFuture<T> get(String path, Function<JsonNode, T> convert) {
+        return send(client, new Request.Builder().url(url(path)).get().build(), (headers, json) -> convert.apply(json));
+    }
+
+    /**
+     * @param path    path of the endpoint
+     * @param convert converts the response headers and json, e.g. to read the version from the ETag; runs in the
+     *                background
+     * @return        converted response, completed on the application thread
+     */
+    public <T> CompletableFuture<T> getWithHeaders(String path, BiFunction<Headers, JsonNode, T> convert) {
+        return send(client, new Request.Builder().url(url(path)).get().build(), convert);
+    }
+
+    /**
+     * @param path path of the endpoint
+     * @param body request json
+     * @return     response json, completed on the application thread
+     */
+    public CompletableFuture<JsonNode> post(String path, JsonNode body) {
+        return send(client, new Request.Builder().url(url(path)).post(json(body)).build());
+    }
+
+    /**
+     * @param path path of the endpoint
+     * @param body request json
+     * @return     response json, completed on the application thread
+     */
+    public CompletableFuture<JsonNode> put(String path, JsonNode body) {
+        return send(client, new Request.Builder().url(url(path)).put(json(body)).build());
+    }
+
+    /**
+     * @param path path of the endpoint
+     * @param body merge patch with the changed attributes
+     * @return     response json, completed on the application thread
+     */
+    public CompletableFuture<JsonNode> patch(String path, JsonNode body) {
+        return send(client, new Request.Builder().url(url(path)).patch(json(body)).build());
+    }
+
+    /**
+     * loads a vault; unlike other requests, this may take a while
+     * @param filepath  path of the vault
+     * @param password  password of the vault
+     * @param overwrite whether the loaded contracts replace the current ones
+     * @return          response json, completed on the application thread
+     */
+    public CompletableFuture<JsonNode> unlock(String filepath, String password, boolean overwrite) {
+        JsonNode body = mapper.createObjectNode()
+                .put("filepath", filepath)
+                .put("password", password)
+                .put("overwrite", overwrite);
+        return send(unlockClient, new Request.Builder().url(url("/import")).put(json(body)).build());
+    }
+
+    private RequestBody json(JsonNode body) {
+        return RequestBody.create(mapper.writeValueAsBytes(body), JSON);
+    }
+
+    private CompletableFuture<JsonNode> send(OkHttpClient httpClient, Request request) {
+        return send(httpClient, request, (headers, json) -> json);
+    }
+
+    private <T> CompletableFuture<T> send(OkHttpClient httpClient, Request request,
+                                          BiFunction<Headers, JsonNode, T> convert) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (!response.isSuccessful()) throw new IOException("An error occurred: " + response);
+                    T converted = convert.apply(response.headers(), mapper.readTree(response.body().byteStream()));
+                    Platform.runLater(() -> result.complete(converted));
+                } catch (Exception e) {
+                    onFailure(call, e instanceof IOException io ? io : new IOException(e));
+                }
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                logger.debug("{} {} failed: {}", request.method(), request.url(), e.getMessage());
+                Platform.runLater(() -> result.completeExceptionally(e));
+            }
+        });
+        return result;
+    }
+}
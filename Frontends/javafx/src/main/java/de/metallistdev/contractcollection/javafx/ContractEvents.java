@@ -0,0 +1,140 @@
+package de.metallistdev.contractcollection.javafx;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import javafx.application.Platform;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * subscribes to the server-sent events of the backend (/events) and hands every change to the JavaFX application
+ * thread
+ * <p>
+ * the events are read on a daemon thread. Whenever the connection is (re)established, onConnect is called, so the
+ * view can catch up on the changes it missed while it wasn't connected, e.g. because the backend dropped it for
+ * lagging behind.
+ */
+public class ContractEvents implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContractEvents.class);
+
+    /** time to wait before reconnecting in milliseconds */
+    private static final long RECONNECT_DELAY = 2000;
+
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+
+    private final OkHttpClient client;
+
+    private final String url;
+
+    private final Consumer<JsonNode> onEvent;
+
+    private final Runnable onConnect;
+
+    private final Thread reader;
+
+    private volatile boolean closed;
+
+    private volatile Call call;
+
+    /**
+     * @param client    client to connect with; read and call timeout are disabled for the subscription
+     * @param url       url of the event stream
+     * @param onEvent   called on the application thread with the data of every event
+     * @param onConnect called on the application thread, whenever the subscription got (re)established
+     */
+    public ContractEvents(OkHttpClient client, String url, Consumer<JsonNode> onEvent, Runnable onConnect) {
+        this.client = client.newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .callTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+        this.url = url;
+        this.onEvent = onEvent;
+        this.onConnect = onConnect;
+        this.reader = new Thread(this::run, "contract-events");
+        this.reader.setDaemon(true);
+    }
+
+    /**
+     * starts listening
+     */
+    public void start() {
+        reader.start();
+    }
+
+    private void run() {
+        while (!closed) {
+            Request request = new Request.Builder()
+                    .url(url)
+                    .header("Accept", "text/event-stream")
+                    .get()
+                    .build();
+            call = client.newCall(request);
+            try (Response response = call.execute()) {
+                if (!response.isSuccessful()) throw new IOException("An error occurred: " + response);
+
+                logger.debug("subscribed to {}", url);
+                Platform.runLater(onConnect);
+                read(new BufferedReader(response.body().charStream()));
+            } catch (IOException e) {
+                if (closed) break;
+                logger.debug("event stream interrupted: {}", e.getMessage());
+            }
+
+            try {
+                if (!closed) Thread.sleep(RECONNECT_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * reads events until the stream ends; only the data lines are of interest
+     */
+    private void read(BufferedReader stream) throws IOException {
+        StringBuilder data = new StringBuilder();
+        String line;
+        while (!closed && (line = stream.readLine()) != null) {
+            if (line.startsWith("data:")) {
+                if (!data.isEmpty()) data.append('\n');
+                data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+            } else if (line.isEmpty() && !data.isEmpty()) {
+                dispatch(data.toString());
+                data.setLength(0);
+            }
+        }
+    }
+
+    private void dispatch(String data) {
+        try {
+            JsonNode event = mapper.readTree(data);
+            Platform.runLater(() -> onEvent.accept(event));
+        } catch (JacksonException e) {
+            logger.debug("unreadable event {}", data);
+        }
+    }
+
+    /**
+     * stops listening
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Call current = call;
+        if (current != null) current.cancel();
+        reader.interrupt();
+    }
+}
@@ -0,0 +1,207 @@
+package de.metallistdev.contractcollection.javafx;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import de.metallistdev.contractcollection.commons.Contract;
+import javafx.collections.ObservableList;
+import okhttp3.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * loads the contracts into a list page by page, only as far as the user scrolled
+ * <p>
+ * the backend returns the pages of /all ordered by id, with the id of the last contract as cursor for the next page.
+ * A page is converted to contracts on the background thread of the BackendClient and appended on the application
+ * thread, so the list stays sorted by id. Changes of contracts beyond the cursor are ignored: they arrive with their
+ * page. The first page also tells the version of the contracts it reflects (ETag of /all). All methods have to be
+ * called on the application thread.
+ */
+public class ContractPager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContractPager.class);
+
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+
+    private final BackendClient backend;
+
+    private final ObservableList<Contract> contracts;
+
+    private final int pageSize;
+
+    /** called with the version of the contracts, whenever a first page got loaded */
+    private final LongConsumer onFirstPage;
+
+    /** id of the last loaded contract */
+    private int cursor;
+
+    /** whether the last page has been loaded */
+    private boolean complete;
+
+    private boolean loading;
+
+    /** incremented by reset, so that pages requested before are dropped */
+    private int generation;
+
+    /**
+     * page of contracts and the version of the contracts it was read at (-1: unknown)
+     */
+    private record Page(List<Contract> contracts, long version) {}
+
+    /**
+     * @param backend     client to fetch the pages with
+     * @param contracts   list to load the contracts into
+     * @param pageSize    number of contracts per page
+     * @param onFirstPage called with the version of the contracts, whenever a first page got loaded
+     */
+    public ContractPager(BackendClient backend, ObservableList<Contract> contracts, int pageSize,
+                         LongConsumer onFirstPage) {
+        this.backend = backend;
+        this.contracts = contracts;
+        this.pageSize = pageSize;
+        this.onFirstPage = onFirstPage;
+    }
+
+    /**
+     * @return true, while a page is requested
+     */
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * forgets the loaded contracts and loads the first page again
+     */
+    public void reset() {
+        generation++;
+        contracts.clear();
+        cursor = 0;
+        complete = false;
+        loading = false;
+        loadNext();
+    }
+
+    /**
+     * replaces the loaded contracts with all contracts
+     * @param all all contracts
+     */
+    public void setAll(Collection<Contract> all) {
+        generation++;
+        List<Contract> sorted = new ArrayList<>(all);
+        sorted.sort((first, second) -> Integer.compare(first.getId(), second.getId()));
+        contracts.setAll(sorted);
+        cursor = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1).getId();
+        complete = true;
+        loading = false;
+    }
+
+    /**
+     * requests the next page, unless it is already loading or there is none
+     */
+    public void loadNext() {
+        if (loading || complete) return;
+        loading = true;
+
+        int requested = generation;
+        boolean first = cursor == 0;
+        backend.getWithHeaders("/all?limit=" + pageSize + "&after=" + cursor, this::convert)
+                .thenAccept(loaded -> {
+                    if (requested != generation) return;
+                    List<Contract> page = loaded.contracts();
+                    // a page usually follows the loaded contracts and is appended as a single change of the list
+                    boolean follows = page.isEmpty() || contracts.isEmpty()
+                            || page.get(0).getId() > contracts.get(contracts.size() - 1).getId();
+                    if (follows) contracts.addAll(page);
+                    else for (Contract contract : page) store(contract);
+                    if (!page.isEmpty()) cursor = Math.max(cursor, page.get(page.size() - 1).getId());
+                    complete = page.size() < pageSize;
+                    logger.debug("loaded {} contracts up to id {}", page.size(), cursor);
+                    if (first && loaded.version() >= 0) onFirstPage.accept(loaded.version());
+                })
+                .whenComplete((ignored, error) -> {
+                    if (requested == generation) loading = false;
+                    if (error != null) logger.error("Failed to load contracts after id {}: {}", cursor, error.getMessage());
+                });
+    }
+
+    /**
+     * converts a page; runs in the background
+     */
+    private Page convert(Headers headers, JsonNode response) {
+        JsonNode body = response.get("body");
+        if (body == null || !body.isArray()) throw new IllegalStateException("Input json is no array.");
+
+        List<Contract> page = new ArrayList<>(body.size());
+        for (JsonNode node : body) page.add(mapper.convertValue(node, Contract.class));
+        return new Page(page, version(headers.get("ETag")));
+    }
+
+    /**
+     * @param eTag entity tag of /all ("epoch-version") or null
+     * @return     version of the contracts or -1, if the tag contains none
+     */
+    private static long version(String eTag) {
+        if (eTag == null) return -1;
+        String tag = eTag.replace("W/", "").replace("\"", "");
+        try {
+            return Long.parseLong(tag.substring(tag.lastIndexOf('-') + 1));
+        } catch (NumberFormatException e) {
+            logger.debug("no version in ETag {}", eTag);
+            return -1;
+        }
+    }
+
+    /**
+     * @param id ID of a contract
+     * @return   true, if the contract belongs to the loaded range
+     */
+    public boolean covers(int id) {
+        return complete || id <= cursor;
+    }
+
+    /**
+     * adds or replaces a contract of the loaded range; others are ignored
+     * @param contract the current state of the contract
+     */
+    public void put(Contract contract) {
+        if (covers(contract.getId())) store(contract);
+    }
+
+    private void store(Contract contract) {
+        int index = indexOf(contract.getId());
+        if (index >= 0) contracts.set(index, contract);
+        else contracts.add(-index - 1, contract);
+    }
+
+    /**
+     * removes a contract, if it is loaded
+     * @param id ID of the contract
+     */
+    public void remove(int id) {
+        int index = indexOf(id);
+        if (index >= 0) contracts.remove(index);
+    }
+
+    /**
+     * binary search in the list, which is sorted by id
+     * @return index of the contract or (-(insertion point) - 1)
+     */
+    private int indexOf(int id) {
+        int low = 0;
+        int high = contracts.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = contracts.get(middle).getId();
+            if (middleId < id) low = middle + 1;
+            else if (middleId > id) high = middle - 1;
+            else return middle;
+        }
+        return -(low + 1);
+    }
+}
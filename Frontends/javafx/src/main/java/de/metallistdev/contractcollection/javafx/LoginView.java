@@ -5,6 +5,7 @@ import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import javafx.stage.FileChooser;
@@ -12,7 +13,6 @@ import javafx.stage.FileChooser;
 import java.io.*;
 
 import javafx.stage.Stage;
-import okhttp3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +27,9 @@ public class LoginView {
     @FXML
     private PasswordField passwordInput;
 
+    @FXML
+    private Button openButton;
+
     public void initialize() {
         logger = LoggerFactory.getLogger(LoginView.class);
     }
@@ -40,35 +43,36 @@ public class LoginView {
             filepathInput.setText(file.getPath());
     }
 
+    /**
+     * unlocks the vault in the background; the login stays responsive and opens the main view once it is loaded
+     */
     public void handlePasswordCommit2 () {
-        final MediaType mediaType = MediaType.parse("application/json");
-        final OkHttpClient client = new OkHttpClient();
-
         String filepath = filepathInput.getText();
         String password = passwordInput.getText();
-        String reqBody = "{\"filepath\": \"" + filepath + "\", " +
-                "\"password\": \"" + password + "\", \"overwrite\": true}";
 
-        Request request = new Request.Builder()
-                .url("http://localhost:8080/import")
-                .put(RequestBody.create(reqBody, mediaType))
-                .build();
-
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("An error occurred: " + response);
-            logger.debug("{}", response.body());
+        setInputDisabled(true);
+        BackendClient.getInstance().unlock(filepath, password, true)
+                .thenAccept(response -> {
+                    logger.debug("{}", response);
+                    try {
+                        FXMLLoader fxmlLoader = new FXMLLoader(ContractCollectionApplication.class.getResource("main-view.fxml"));
+                        Parent parent = (Parent) fxmlLoader.load();
+                        Stage stage = new Stage();
+                        stage.setScene(new Scene(parent));
+                        stage.show();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .whenComplete((ignored, error) -> {
+                    setInputDisabled(false);
+                    if (error != null) logger.error("Failed to open {}: {}", filepath, error.getMessage());
+                });
+    }
 
-            try {
-                FXMLLoader fxmlLoader = new FXMLLoader(ContractCollectionApplication.class.getResource("main-view.fxml"));
-                Parent parent = (Parent) fxmlLoader.load();
-                Stage stage = new Stage();
-                stage.setScene(new Scene(parent));
-                stage.show();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private void setInputDisabled(boolean disabled) {
+        filepathInput.setDisable(disabled);
+        passwordInput.setDisable(disabled);
+        openButton.setDisable(disabled);
     }
 }
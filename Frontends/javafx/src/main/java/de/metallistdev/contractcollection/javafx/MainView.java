@@ -1,23 +1,23 @@
 package de.metallistdev.contractcollection.javafx;
 
-import tools.jackson.core.JacksonException;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.SerializationFeature;
 import de.metallistdev.contractcollection.commons.Contract;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
-import okhttp3.*;
+import javafx.scene.control.TableRow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tools.jackson.databind.json.JsonMapper;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MainView {
 
@@ -43,52 +43,134 @@ public class MainView {
 
     private final ObjectMapper mapper = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
 
+    private final BackendClient backend = BackendClient.getInstance();
+
+    private final ObservableList<Contract> contracts = FXCollections.observableArrayList();
+
+    /** version of the contracts, which the table reflects (-1: unknown until the first page got loaded) */
+    private long version = -1;
+
+    /** number of contracts, which are fetched at once */
+    private static final int PAGE_SIZE = 200;
+
+    /** the next page is requested, once one of the last rows of the loaded contracts is shown */
+    private static final int PREFETCH_ROWS = 50;
+
+    /** loads the contracts, as far as the user scrolled */
+    private ContractPager pager;
+
+    /** pushes the changes of the backend into the table */
+    private ContractEvents events;
+
+    /**
+     * changes since a version, converted in the background (see /changes)
+     */
+    private record Changes(long version, boolean snapshot, List<Contract> contracts, List<Integer> removed) {}
+
 
     public void initialize() {
         logger = LoggerFactory.getLogger(MainView.class);
 
-        final OkHttpClient client = new OkHttpClient();
+        // typed accessors instead of PropertyValueFactory, which looks up the getters by reflection for every cell
+        nameColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getName()));
+        typeColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getCategory()));
+        expensesColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(String.valueOf(cell.getValue().getExpenses())));
+
+        // the table only creates rows for the visible contracts; showing one of the last ones loads the next page
+        table.setRowFactory(view -> new TableRow<>() {
+            @Override
+            public void updateIndex(int index) {
+                super.updateIndex(index);
+                if (index >= 0 && index >= contracts.size() - PREFETCH_ROWS) pager.loadNext();
+            }
+        });
 
-        String body = "<empty>";
-        JsonNode json;
-        ObservableList<Contract> contracts = FXCollections.observableArrayList();
+        table.getColumns().addAll(nameColumn, typeColumn, expensesColumn);
+        table.setItems(contracts);
 
-        Request request = new Request.Builder()
-                .url("http://localhost:8080/all")
-                .get()
-                .build();
+        pager = new ContractPager(backend, contracts, PAGE_SIZE, this::firstPageLoaded);
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("An error occurred: " + response);
+        // the first connect loads the first page, every reconnect catches up on the changes, which happened meanwhile
+        events = new ContractEvents(backend.getHttpClient(), backend.url("/events"), this::apply, this::refresh);
+        events.start();
+    }
 
-            if (response.body() != null) {
-                body = response.body().string();
-            }
-            logger.debug("response from backend: {}", body);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * fetches the changes since the known version from the backend in the background and applies them to the table;
+     * without a known version, the table is loaded from scratch, unless its first page is loading already
+     */
+    public void refresh() {
+        if (version < 0) {
+            if (!pager.isLoading()) pager.reset();
+            return;
         }
+        backend.get("/changes?since=" + version, this::convertChanges)
+                .thenAccept(this::applyChanges)
+                .exceptionally(error -> {
+                    logger.error("Failed to refresh the contracts: {}", error.getMessage());
+                    return null;
+                });
+    }
 
-        try {
-            json = mapper.readTree(body).get("body");
-            if (json.isArray()) {
-                for (JsonNode node : json) {
-                    Contract contract = mapper.convertValue(node, Contract.class);
-                    contracts.add(contract);
-                }
-            } else {
-                logger.debug("{}", json);
-                throw new RuntimeException("Input json is no array.");
-            }
-        } catch (JacksonException e) {
-            throw new RuntimeException(e);
+    /**
+     * takes over the version of a first page; changes pushed while it was loading may be missing from it, those are
+     * fetched via /changes
+     * @param pageVersion version of the contracts, which the page was read at
+     */
+    private void firstPageLoaded(long pageVersion) {
+        boolean missed = version > pageVersion;
+        version = pageVersion;
+        if (missed) refresh();
+    }
+
+    /**
+     * converts the response of /changes; runs in the background
+     */
+    private Changes convertChanges(JsonNode response) {
+        JsonNode json = response.get("body");
+        if (json == null || !json.path("contracts").isArray()) {
+            logger.debug("{}", json);
+            throw new IllegalStateException("Input json contains no changes.");
         }
 
-        nameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-        typeColumn.setCellValueFactory(new PropertyValueFactory<>("category"));
-        expensesColumn.setCellValueFactory(new PropertyValueFactory<>("expenses"));
+        List<Contract> changed = new ArrayList<>(json.get("contracts").size());
+        for (JsonNode node : json.get("contracts")) changed.add(mapper.convertValue(node, Contract.class));
+        List<Integer> removed = new ArrayList<>(json.path("removed").size());
+        for (JsonNode id : json.path("removed")) removed.add(id.asInt());
+        return new Changes(json.get("version").asLong(), json.path("snapshot").booleanValue(), changed, removed);
+    }
 
-        table.getColumns().addAll(nameColumn, typeColumn, expensesColumn);
-        table.setItems(contracts);
+    private void applyChanges(Changes changes) {
+        // a refresh, which overtook this one, already applied newer changes
+        if (changes.version() < version) return;
+        version = changes.version();
+
+        if (changes.snapshot()) {
+            pager.setAll(changes.contracts());
+            return;
+        }
+        if (changes.contracts().isEmpty() && changes.removed().isEmpty()) {
+            logger.debug("contracts unchanged since version {}", version);
+            return;
+        }
+        for (int id : changes.removed()) pager.remove(id);
+        for (Contract contract : changes.contracts()) pager.put(contract);
+    }
+
+    /**
+     * applies a change pushed by the backend; changes, which are already contained in the table, are skipped
+     * @param event change with the version of the contracts after it
+     */
+    private void apply(JsonNode event) {
+        long eventVersion = event.path("version").asLong();
+        if (eventVersion <= version) return;
+
+        switch (event.path("op").asString()) {
+            case "add", "update" -> pager.put(mapper.convertValue(event.get("contract"), Contract.class));
+            case "delete" -> pager.remove(event.path("id").asInt());
+            case "clear" -> pager.reset();
+            default -> logger.debug("unknown event {}", event);
+        }
+        version = eventVersion;
     }
 }